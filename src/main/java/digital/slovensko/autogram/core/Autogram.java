@@ -8,27 +8,41 @@ import digital.slovensko.autogram.ui.BatchUiResult;
 import digital.slovensko.autogram.ui.UI;
 import digital.slovensko.autogram.util.Logging;
 import digital.slovensko.autogram.util.PDFUtils;
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
 import eu.europa.esig.dss.model.DSSException;
+import eu.europa.esig.dss.model.SignatureValue;
+import eu.europa.esig.dss.model.ToBeSigned;
+import eu.europa.esig.dss.model.x509.CertificateToken;
 import eu.europa.esig.dss.pdfa.PDFAStructureValidator;
 import eu.europa.esig.dss.spi.x509.tsp.TSPSource;
 
 import java.io.File;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 
 public class Autogram {
     private final UI ui;
     private final UserSettings settings;
-    /** Current batch, should be null if no batch was started yet */
-    private Batch batch = null;
+    private final BatchRegistry batches;
     private final PasswordManager passwordManager;
+    private final TokenSessionCache tokenSessions;
+    /** Created with the first batch document */
+    private SigningPipeline signingPipeline = null;
 
     public Autogram(UI ui, UserSettings settings) {
         this.ui = ui;
         this.settings = settings;
         this.passwordManager = new PasswordManager(ui, this.settings);
+        this.batches = BatchRegistry.fromConfiguration(this::onBatchExpired);
+        this.tokenSessions = TokenSessionCache.fromConfiguration();
     }
 
     public void sign(SigningJob job) {
@@ -93,7 +107,7 @@ public class Autogram {
     private void signCommonAndThen(SigningJob job, SigningKey signingKey, Consumer<SigningJob> callback) {
         try {
             job.signWithKeyAndRespond(signingKey);
-            if (batch == null || batch.isEnded() || batch.isAllProcessed())
+            if (!batches.hasActiveBatches())
                 passwordManager.reset();
 
             callback.accept(job);
@@ -101,9 +115,9 @@ public class Autogram {
             passwordManager.reset();
             throw e;
         } catch (AutogramException e) {
-            throw e;
+            throw onTokenFailure(e, signingKey);
         } catch (DSSException e) {
-            throw AutogramException.createFromDSSException(e);
+            throw onTokenFailure(AutogramException.createFromDSSException(e), signingKey);
         } catch (IllegalArgumentException e) {
             throw AutogramException.createFromIllegalArgumentException(e);
         } catch (Exception e) {
@@ -112,7 +126,7 @@ public class Autogram {
     }
 
     public void sign(SigningJob job, SigningKey signingKey) {
-        ui.onWorkThreadDo(() -> {
+        ui.onWorkThreadDo(WorkScheduler.Kind.TOKEN, () -> {
             try {
                 signCommonAndThen(job, signingKey, (jobNew) -> {
                     ui.onUIThreadDo(() -> ui.onSigningSuccess(jobNew));
@@ -127,16 +141,50 @@ public class Autogram {
         });
     }
 
+    /**
+     * Second phase of two-phase signing. The user has already confirmed the document when its data to sign was
+     * prepared, so only the token is used here and only with the active key the data was prepared for. Called from
+     * the HTTP thread, so it is submitted to the TOKEN executor to not sign concurrently with other token work.
+     */
+    public void signPreparedData(ToBeSigned dataToSign, DigestAlgorithm digestAlgorithm, CertificateToken certificate,
+            Consumer<SignatureValue> onSigned, Consumer<AutogramException> onFailed) {
+        ui.getWorkExecutor(WorkScheduler.Kind.TOKEN).execute(() -> {
+            try {
+                var key = ui.getActiveSigningKey();
+                if (key == null || !key.getCertificate().equals(certificate))
+                    throw new SigningKeyNotAvailableException();
+
+                var signatureValue = key.sign(dataToSign, digestAlgorithm);
+                if (!batches.hasActiveBatches())
+                    passwordManager.reset();
+
+                onSigned.accept(signatureValue);
+            } catch (PINIncorrectException e) {
+                passwordManager.reset();
+                onFailed.accept(e);
+            } catch (AutogramException e) {
+                onFailed.accept(onTokenFailure(e, ui.getActiveSigningKey()));
+            } catch (DSSException e) {
+                var error = AutogramException.createFromDSSException(e);
+                if (error instanceof PINIncorrectException)
+                    passwordManager.reset();
+
+                onFailed.accept(onTokenFailure(error, ui.getActiveSigningKey()));
+            } catch (Exception e) {
+                onFailed.accept(new UnrecognizedException(e));
+            }
+        });
+    }
+
     /**
      * Starts a batch - ask user - get signing key - start batch - return batch ID
      *
-     * @param totalNumberOfDocuments - expected number of documents to be signed
+     * @param totalNumberOfDocuments - expected number of documents to be signed, null for an open-ended batch which
+     *                               accepts documents until it is ended or idle for too long
      * @param responder              - callback for http response
      */
-    public void batchStart(int totalNumberOfDocuments, BatchResponder responder) {
-        if (batch != null && !batch.isEnded())
-            throw new BatchConflictException("Iné hromadné podpisovanie už prebieha");
-        batch = new Batch(totalNumberOfDocuments);
+    public void batchStart(Integer totalNumberOfDocuments, BatchResponder responder) {
+        var batch = batches.create(totalNumberOfDocuments);
 
         var startBatchTask = new AutogramBatchStartCallback(batch, responder);
 
@@ -152,49 +200,140 @@ public class Autogram {
      * @param batchId - current batch ID, used to authenticate the request
      */
     public void batchSign(SigningJob job, String batchId) {
-        if (batch == null) throw new BatchNotStartedException(); // TODO replace with checked exception
+        var batch = batches.get(batchId);
+        var timing = batch.addJob(batchId);
 
-        batch.addJob(batchId);
+        // each batch is a lane of the pipeline, so concurrent batches take turns on the token
+        CompletableFuture<Void> signing;
+        try {
+            signing = getSigningPipeline().submit(job, batch.getSigningKey(), batch, timing::started);
+        } catch (RuntimeException e) {
+            // a batch does not expire while its documents are in flight, this one never started
+            timing.finished();
+            throw e;
+        }
 
-        ui.onWorkThreadDo(() -> {
-            try {
-                signCommonAndThen(job, batch.getSigningKey(), (jobNew) -> {
-                    Logging.log("GUI: Signing batch job: " + job.hashCode() + " file " + job.getDocument().getName());
-                });
-            } catch (AutogramException e) {
-                job.onDocumentSignFailed(e);
-                if (!e.batchCanContinue()) {
-                    ui.onUIThreadDo(() -> {
-                        ui.cancelBatch(batch);
-                    });
-                    throw e;
-                }
-            } catch (Exception e) {
-                AutogramException autogramException = new AutogramException("Document signing has failed", "", "", e);
-                job.onDocumentSignFailed(autogramException);
+        signing.whenComplete((ignored, throwable) -> {
+            timing.finished();
+            if (throwable == null) {
+                Logging.log("GUI: Signing batch job: " + job.hashCode() + " file " + job.getDocument().getName());
+                if (!batches.hasActiveBatches())
+                    passwordManager.reset();
+            } else {
+                onBatchJobFailed(batch, job, throwable instanceof CompletionException ? throwable.getCause() : throwable);
             }
+
             ui.onUIThreadDo(() -> {
                 ui.updateBatch();
             });
         });
     }
 
+    private void onBatchJobFailed(Batch batch, SigningJob job, Throwable throwable) {
+        AutogramException e;
+        if (throwable instanceof PINIncorrectException pinIncorrectException) {
+            passwordManager.reset();
+            e = pinIncorrectException;
+        } else if (throwable instanceof AutogramException autogramException) {
+            e = autogramException;
+        } else if (throwable instanceof DSSException dssException) {
+            e = AutogramException.createFromDSSException(dssException);
+        } else if (throwable instanceof IllegalArgumentException illegalArgumentException) {
+            e = AutogramException.createFromIllegalArgumentException(illegalArgumentException);
+        } else {
+            e = new UnrecognizedException(throwable);
+        }
+
+        onTokenFailure(e, batch.getSigningKey());
+        job.onDocumentSignFailed(e);
+        if (!e.batchCanContinue()) {
+            ui.onUIThreadDo(() -> {
+                ui.cancelBatch(batch);
+            });
+        }
+    }
+
+    /**
+     * A removed token cannot be used anymore, drop its cached session so the next key pick opens the token again.
+     * Batch failures are handled off the TOKEN thread, the session is closed on it so no token operation is cut.
+     */
+    private AutogramException onTokenFailure(AutogramException e, SigningKey signingKey) {
+        if (e instanceof TokenRemovedException && signingKey != null) {
+            var token = signingKey.token;
+            ui.getWorkExecutor(WorkScheduler.Kind.TOKEN).execute(() -> tokenSessions.invalidate(token));
+        }
+
+        return e;
+    }
+
+    /**
+     * Close the cached token sessions and so log out of the tokens, e.g. when the app exits. Runs on the TOKEN thread
+     * after the token work queued before, waits for it at most the timeout.
+     */
+    public void closeTokenSessions(Duration timeout) throws InterruptedException {
+        try {
+            CompletableFuture.runAsync(tokenSessions::closeAll, ui.getWorkExecutor(WorkScheduler.Kind.TOKEN))
+                    .get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            Logging.log("Closing token sessions failed: " + e);
+        }
+    }
+
+    private synchronized SigningPipeline getSigningPipeline() {
+        if (signingPipeline == null)
+            signingPipeline = SigningPipeline.fromConfiguration(ui.getWorkExecutor(WorkScheduler.Kind.TOKEN));
+
+        return signingPipeline;
+    }
+
     /**
      * End the batch
      *
      * @param batchId - current batch ID, used to authenticate the request
      */
     public boolean batchEnd(String batchId) {
+        var batch = batches.get(batchId);
         batch.validate(batchId);
         batch.end();
+        if (!batches.hasActiveBatches())
+            passwordManager.reset();
+
         ui.onUIThreadDo(() -> {
             ui.cancelBatch(batch);
         });
         return batch.isAllProcessed();
     }
 
+    private void onBatchExpired(Batch batch) {
+        if (!batches.hasActiveBatches())
+            passwordManager.reset();
+
+        ui.onUIThreadDo(() -> {
+            ui.cancelBatch(batch);
+        });
+    }
+
+    /**
+     * Expire idle batches and token sessions also when no requests come, so an abandoned open-ended batch does not
+     * keep the key and the cached password and an unused token does not stay logged in.
+     */
+    public void initializeSessionExpiry(ScheduledExecutorService scheduledExecutorService) {
+        scheduledExecutorService.scheduleAtFixedRate(() -> {
+            batches.sweepExpired();
+            // closing a token must not overlap a token operation, run it on the TOKEN thread also from this scheduler
+            ui.getWorkExecutor(WorkScheduler.Kind.TOKEN).execute(tokenSessions::evictIdle);
+        }, 1, 1, java.util.concurrent.TimeUnit.MINUTES);
+    }
+
+    /**
+     * Batch for reading its progress, unlike {@link #getBatch(String)} also after it has ended.
+     */
+    public Batch getBatchForStatus(String batchId) {
+        return batches.get(batchId);
+    }
+
     public Batch getBatch(String batchId) {
-        if (batch == null) throw new BatchNotStartedException(); // TODO replace with checked exception
+        var batch = batches.get(batchId);
         batch.validate(batchId);
         return batch;
     }
@@ -203,7 +342,7 @@ public class Autogram {
         var drivers = settings.getDriverDetector().getAvailableDrivers();
         ui.pickTokenDriverAndThen(drivers,
                 (driver) -> {
-                    ui.onWorkThreadDo(() -> {
+                    ui.onWorkThreadDo(WorkScheduler.Kind.TOKEN, () -> {
                         fetchKeysAndThen(driver, callback);
                     });
                 }
@@ -211,19 +350,25 @@ public class Autogram {
     }
 
     private void fetchKeysAndThen(TokenDriver driver, Consumer<SigningKey> callback) {
+        TokenSessionCache.Session session = null;
         try {
-            var token = driver.createToken(passwordManager, settings);
-            var keys = token.getKeys();
+            session = tokenSessions.open(driver, passwordManager, settings);
+            var keys = session.getKeys();
 
-            ui.onUIThreadDo(
-                    () -> ui.pickKeyAndThen(keys, driver, (privateKey) -> callback.accept(new SigningKey(token, privateKey))));
+            var openedSession = session;
+            ui.onUIThreadDo(() -> ui.pickKeyAndThen(keys, driver,
+                    (privateKey) -> callback.accept(openedSession.createSigningKey(privateKey))));
         } catch (DSSException e) {
+            // e.g. login failed, do not keep a token we could not read keys from
+            if (session != null)
+                tokenSessions.invalidate(session.getToken());
+
             ui.onUIThreadDo(() -> ui.onPickSigningKeyFailed(AutogramException.createFromDSSException(e)));
         }
     }
 
     public void checkForUpdate() {
-        ui.onWorkThreadDo(() -> {
+        ui.onWorkThreadDo(WorkScheduler.Kind.IO, () -> {
             if (!Updater.newVersionAvailable())
                 return;
             ui.onUIThreadDo(ui::onUpdateAvailable);
@@ -251,7 +396,7 @@ public class Autogram {
     }
 
     public void initializeSignatureValidator(ScheduledExecutorService scheduledExecutorService, ExecutorService cachedExecutorService, List<String> tlCountries) {
-        ui.onWorkThreadDo(() -> {
+        ui.onWorkThreadDo(WorkScheduler.Kind.IO, () -> {
             SignatureValidator.getInstance().initialize(cachedExecutorService, tlCountries);
         });
 
@@ -1,13 +1,22 @@
 package digital.slovensko.autogram.core;
 
+import java.util.Arrays;
 import java.util.Date;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import digital.slovensko.autogram.core.errors.BatchEndedException;
 import digital.slovensko.autogram.core.errors.BatchExpiredException;
 import digital.slovensko.autogram.core.errors.BatchInvalidIdException;
+import digital.slovensko.autogram.core.metrics.Counter;
+import digital.slovensko.autogram.core.metrics.Metrics;
 import digital.slovensko.autogram.util.Logging;
 
+import static digital.slovensko.autogram.core.Configuration.getProperty;
+
 enum BatchState {
     INITIALIZED, STARTED, ENDED
 }
@@ -16,48 +25,86 @@ enum BatchState {
  * Batch is a session for signing multiple documents with the same key.
  * 
  * This class is used for checking runtime conditions and tracking progress.
+ *
+ * A batch does not expire while any of its documents is being signed, it expires batch.idleTimeoutSeconds after the
+ * last document was added, started or finished.
+ *
+ * An open-ended batch has no declared number of documents. It accepts documents until it is ended or until it
+ * expires, and it counts as processed only after it has ended.
  */
 public class Batch {
-    private final String batchId = generateNewBatchId();
-    private final int totalNumberOfDocuments;
-
-    private BatchState state = BatchState.INITIALIZED;
-    private SigningKey signingKey = null;
-
-    private Date expriationDate = new Date(System.currentTimeMillis() + 1000 * 60 * 10);
-    private int addedDocumentsCount = 0;
-    private int successfulDocumentsCount = 0;
-    private int failedDocumentsCount = 0;
+    private static final Counter BATCHES = Metrics.counter("autogram_batches_total", "Number of started batches");
+    private static final Counter SUCCESSFUL_DOCUMENTS = Metrics.counter("autogram_batch_documents_total",
+            "Number of documents processed in batches", "result", "success");
+    private static final Counter FAILED_DOCUMENTS = Metrics.counter("autogram_batch_documents_total",
+            "Number of documents processed in batches", "result", "failure");
+    private static final long IDLE_TIMEOUT_MILLIS = Long.parseLong(getProperty("batch.idleTimeoutSeconds")) * 1000;
+    // latency percentiles are computed over this many most recently finished documents
+    static final int LATENCY_WINDOW = 1000;
 
-    public Batch(int totalNumberOfDocuments) {
+    private final String batchId = generateNewBatchId();
+    /** null for an open-ended batch */
+    private final Integer totalNumberOfDocuments;
+
+    // updated from signing threads, everything below is either atomic or volatile
+    private volatile BatchState state = BatchState.INITIALIZED;
+    private volatile SigningKey signingKey = null;
+
+    private volatile Date expriationDate = new Date(System.currentTimeMillis() + IDLE_TIMEOUT_MILLIS);
+    private final AtomicInteger addedDocumentsCount = new AtomicInteger();
+    private final AtomicInteger successfulDocumentsCount = new AtomicInteger();
+    private final AtomicInteger failedDocumentsCount = new AtomicInteger();
+    private final AtomicInteger finishedDocumentsCount = new AtomicInteger();
+    private final AtomicLong firstStartedNanos = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong lastFinishedNanos = new AtomicLong(Long.MIN_VALUE);
+    // lock-free ring buffer, a writer reserves its slot by incrementing the count and older latencies are
+    // overwritten; a slot reserved but not written yet still holds the previous latency or -1
+    private final AtomicLongArray recentLatencies = new AtomicLongArray(LATENCY_WINDOW);
+    private final AtomicLong recordedLatenciesCount = new AtomicLong();
+
+    /**
+     * @param totalNumberOfDocuments null for an open-ended batch
+     */
+    public Batch(Integer totalNumberOfDocuments) {
         this.totalNumberOfDocuments = totalNumberOfDocuments;
+        for (int i = 0; i < LATENCY_WINDOW; i++)
+            recentLatencies.set(i, -1);
         resetExpirationDate();
     }
 
-    public void start(SigningKey key) {
+    public synchronized void start(SigningKey key) {
         if (state != BatchState.INITIALIZED)
             throw new BatchEndedException("Nie je možné opätovne spustiť hromadné podpisovanie");
-        state = BatchState.STARTED;
         signingKey = key;
+        state = BatchState.STARTED;
+        BATCHES.inc();
     }
 
-    public void addJob(String batchId) {
+    /**
+     * @return timing of the added document, the caller marks when its signing started and finished
+     */
+    public DocumentTiming addJob(String batchId) {
         validate(batchId);
 
-        if (this.totalNumberOfDocuments <= this.addedDocumentsCount)
+        var added = addedDocumentsCount.getAndUpdate((count) -> isOpenEnded() || count < totalNumberOfDocuments ? count + 1 : count);
+        if (!isOpenEnded() && added >= totalNumberOfDocuments)
             throw new IllegalAccessError("Sent more sign requests than declared at start");
 
-        addedDocumentsCount++;
+        resetExpirationDate();
+
+        return new DocumentTiming();
     }
 
     public void onJobSuccess() {
-        successfulDocumentsCount++;
+        successfulDocumentsCount.incrementAndGet();
+        SUCCESSFUL_DOCUMENTS.inc();
         Logging.log("Batch " + batchId + " success");
         log();
     }
 
     public void onJobFailure() {
-        failedDocumentsCount++;
+        failedDocumentsCount.incrementAndGet();
+        FAILED_DOCUMENTS.inc();
         Logging.log("Batch " + batchId + " failed");
         log();
     }
@@ -92,24 +139,99 @@ public class Batch {
         return batchId;
     }
 
+    String getId() {
+        return batchId;
+    }
+
+    /**
+     * Status can be read also after the batch has ended, only the id is checked.
+     */
+    public void validateId(String batchId) {
+        if (!this.batchId.equals(batchId)) throw new BatchInvalidIdException();
+    }
+
     public boolean isEnded() {
         return state == BatchState.ENDED;
     }
 
     public boolean isAllProcessed() {
+        if (isOpenEnded())
+            return isEnded() && getProcessedDocumentsCount() >= getAddedDocumentsCount();
+
         return getProcessedDocumentsCount() >= totalNumberOfDocuments;
     }
 
+    public boolean isOpenEnded() {
+        return totalNumberOfDocuments == null;
+    }
+
     public boolean isKeyChangeAllowed() {
         return state == BatchState.INITIALIZED;
     }
 
+    /**
+     * @return declared number of documents, for an open-ended batch the number of documents added so far
+     */
     public int getTotalNumberOfDocuments() {
-        return totalNumberOfDocuments;
+        return isOpenEnded() ? getAddedDocumentsCount() : totalNumberOfDocuments;
     }
 
     public int getProcessedDocumentsCount(){
-        return successfulDocumentsCount + failedDocumentsCount;
+        return successfulDocumentsCount.get() + failedDocumentsCount.get();
+    }
+
+    public int getAddedDocumentsCount() {
+        return addedDocumentsCount.get();
+    }
+
+    public int getSuccessfulDocumentsCount() {
+        return successfulDocumentsCount.get();
+    }
+
+    public int getFailedDocumentsCount() {
+        return failedDocumentsCount.get();
+    }
+
+    public String getState() {
+        return state.name();
+    }
+
+    /**
+     * Latency from adding a document to the batch until it was signed (or failed), over the last LATENCY_WINDOW
+     * finished documents.
+     *
+     * @param percentile between 0 and 1
+     * @return latency in milliseconds or null if no document finished yet
+     */
+    public Long getDocumentLatencyMillis(double percentile) {
+        var size = (int) Math.min(recordedLatenciesCount.get(), LATENCY_WINDOW);
+        var latencies = new long[size];
+        var copied = 0;
+        for (int i = 0; i < size; i++) {
+            var latency = recentLatencies.get(i);
+            if (latency >= 0)
+                latencies[copied++] = latency;
+        }
+        if (copied == 0)
+            return null;
+
+        latencies = Arrays.copyOf(latencies, copied);
+
+        Arrays.sort(latencies);
+        var index = (int) Math.ceil(percentile * latencies.length) - 1;
+        return TimeUnit.NANOSECONDS.toMillis(latencies[Math.max(0, Math.min(index, latencies.length - 1))]);
+    }
+
+    /**
+     * @return finished documents per second since the first document started signing, null if none finished yet
+     */
+    public Double getThroughputPerSecond() {
+        // first and last are updated before the count, see onDocumentFinished
+        var finished = finishedDocumentsCount.get();
+        if (finished == 0)
+            return null;
+
+        return finished / Math.max((lastFinishedNanos.get() - firstStartedNanos.get()) / 1e9, 1e-3);
     }
 
     public SigningKey getSigningKey() {
@@ -121,16 +243,60 @@ public class Batch {
         return UUID.randomUUID().toString();
     }
 
-    private boolean isExpired() {
-        return expriationDate.before(new Date());
+    boolean isExpired() {
+        return isExpired(new Date());
+    }
+
+    boolean isExpired(Date now) {
+        // finished is counted after added, so a document in flight is never missed
+        if (finishedDocumentsCount.get() < addedDocumentsCount.get())
+            return false;
+
+        return expriationDate.before(now);
     }
 
     public void resetExpirationDate() {
-        expriationDate = new Date(System.currentTimeMillis() + 1000 * 60 * 10); // 1 minute
+        expriationDate = new Date(System.currentTimeMillis() + IDLE_TIMEOUT_MILLIS); // since last document activity
     }
 
     public void log() {
-        Logging.log("Batch " + batchId + " state: " + state + " processed: " + addedDocumentsCount + " total: " + totalNumberOfDocuments);
+        Logging.log("Batch " + batchId + " state: " + state + " processed: " + addedDocumentsCount + " total: " + (isOpenEnded() ? "open-ended" : totalNumberOfDocuments));
+    }
+
+    private void onDocumentStarted(long startedNanos) {
+        firstStartedNanos.accumulateAndGet(startedNanos, Math::min);
+        resetExpirationDate();
+    }
+
+    private void onDocumentFinished(long startedNanos, long finishedNanos, long latencyNanos) {
+        firstStartedNanos.accumulateAndGet(startedNanos, Math::min);
+        lastFinishedNanos.accumulateAndGet(finishedNanos, Math::max);
+        var slot = (int) (recordedLatenciesCount.getAndIncrement() % LATENCY_WINDOW);
+        recentLatencies.set(slot, latencyNanos);
+
+        // the idle timeout starts again when the last document in flight finishes
+        resetExpirationDate();
+        finishedDocumentsCount.incrementAndGet();
+    }
+
+    /**
+     * Enqueue, start and finish timestamps (System.nanoTime) of one document in the batch. They are folded into the
+     * batch statistics when reported, the timing itself is not kept by the batch.
+     */
+    public class DocumentTiming {
+        private final long enqueuedNanos = System.nanoTime();
+        private volatile long startedNanos;
+
+        public void started() {
+            startedNanos = System.nanoTime();
+            onDocumentStarted(startedNanos);
+        }
+
+        public void finished() {
+            var finishedNanos = System.nanoTime();
+            var started = startedNanos;
+            onDocumentFinished(started != 0 ? started : enqueuedNanos, finishedNanos, finishedNanos - enqueuedNanos);
+        }
     }
 
 }
@@ -0,0 +1,88 @@
+package digital.slovensko.autogram.core;
+
+import digital.slovensko.autogram.core.errors.BatchConflictException;
+import digital.slovensko.autogram.core.errors.BatchExpiredException;
+import digital.slovensko.autogram.core.errors.BatchNotStartedException;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import static digital.slovensko.autogram.core.Configuration.getProperty;
+
+/**
+ * Batches by batch id, several batches can run at once.
+ *
+ * A batch expires batch.idleTimeoutSeconds after its last document was added, started or finished, never while a
+ * document is being signed. Expired batches are swept lazily when
+ * a batch is created or looked up, or periodically by {@link #sweepExpired()} if the caller schedules it. Ended
+ * batches are kept until they expire, so their status can still be read.
+ */
+public class BatchRegistry {
+    private final int maxActiveBatches;
+    private final Consumer<Batch> onExpired;
+    private final Map<String, Batch> batches = new ConcurrentHashMap<>();
+
+    /**
+     * @param onExpired called for batches swept while not ended yet
+     */
+    public BatchRegistry(int maxActiveBatches, Consumer<Batch> onExpired) {
+        this.maxActiveBatches = maxActiveBatches;
+        this.onExpired = onExpired;
+    }
+
+    public static BatchRegistry fromConfiguration(Consumer<Batch> onExpired) {
+        return new BatchRegistry(Integer.parseInt(getProperty("batch.maxActiveBatches")), onExpired);
+    }
+
+    /**
+     * @param totalNumberOfDocuments null for an open-ended batch
+     */
+    public synchronized Batch create(Integer totalNumberOfDocuments) {
+        sweepExpired();
+        if (getActiveBatchesCount() >= maxActiveBatches)
+            throw new BatchConflictException("Prebieha príliš veľa hromadných podpisovaní naraz");
+
+        var batch = new Batch(totalNumberOfDocuments);
+        batches.put(batch.getId(), batch);
+
+        return batch;
+    }
+
+    /**
+     * @throws BatchNotStartedException if there is no such batch
+     * @throws BatchExpiredException    if the batch has just expired
+     */
+    public Batch get(String batchId) {
+        var batch = batchId == null ? null : batches.get(batchId);
+        if (batch == null)
+            throw new BatchNotStartedException();
+
+        if (batch.isExpired()) {
+            expire(batch);
+            throw new BatchExpiredException();
+        }
+
+        return batch;
+    }
+
+    public boolean hasActiveBatches() {
+        return getActiveBatchesCount() > 0;
+    }
+
+    public int getActiveBatchesCount() {
+        return (int) batches.values().stream()
+                .filter((batch) -> !batch.isEnded() && !batch.isAllProcessed() && !batch.isExpired()).count();
+    }
+
+    public void sweepExpired() {
+        batches.values().stream().filter(Batch::isExpired).toList().forEach(this::expire);
+    }
+
+    private void expire(Batch batch) {
+        if (batches.remove(batch.getId(), batch) && !batch.isEnded()) {
+            batch.end();
+            onExpired.accept(batch);
+        }
+    }
+}
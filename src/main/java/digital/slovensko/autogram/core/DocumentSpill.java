@@ -0,0 +1,274 @@
+package digital.slovensko.autogram.core;
+
+import digital.slovensko.autogram.util.Logging;
+import eu.europa.esig.dss.enumerations.MimeType;
+import eu.europa.esig.dss.model.DSSDocument;
+import eu.europa.esig.dss.model.FileDocument;
+import eu.europa.esig.dss.model.InMemoryDocument;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.Cleaner;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.Comparator;
+
+import static digital.slovensko.autogram.core.Configuration.getProperty;
+
+/**
+ * Documents over document.spillThresholdMegabytes are kept in temporary files instead of the heap, so signing a
+ * large document does not need several copies of it in memory.
+ *
+ * A temporary file is deleted by {@link #discard} once the job responded or failed, or once a kept result was fetched
+ * or expired. Files of documents nobody discarded are deleted when the document is garbage collected and files left
+ * at exit are deleted with their directory.
+ */
+public class DocumentSpill {
+    private static final long THRESHOLD_BYTES = Long.parseLong(getProperty("document.spillThresholdMegabytes"))
+            * 1024 * 1024;
+    private static final Cleaner cleaner = Cleaner.create();
+    private static Path directory = null;
+
+    public static boolean shouldSpill(long size) {
+        return THRESHOLD_BYTES > 0 && size > THRESHOLD_BYTES;
+    }
+
+    public static DSSDocument fromBytes(byte[] content, String name, MimeType mimeType) {
+        if (!shouldSpill(content.length))
+            return new InMemoryDocument(content, name, mimeType);
+
+        try {
+            return write(new InMemoryDocument(content).openStream(), name, mimeType);
+        } catch (IOException e) {
+            Logging.log("Unable to spill " + name + " to disk, keeping it in memory: " + e);
+            return new InMemoryDocument(content, name, mimeType);
+        }
+    }
+
+    /**
+     * Large content is decoded straight into the file, without the decoded bytes ever being in memory.
+     *
+     * @throws IllegalArgumentException if the content is not valid base64, same as {@link Base64.Decoder#decode}
+     */
+    public static DSSDocument fromBase64(String content, String name, MimeType mimeType) {
+        if (!shouldSpill(content.length() / 4L * 3))
+            return new InMemoryDocument(Base64.getDecoder().decode(content), name, mimeType);
+
+        try {
+            return write(Base64.getDecoder().wrap(new CharSequenceInputStream(content)), name, mimeType);
+        } catch (IOException e) {
+            // decoding in memory also rejects invalid content with IllegalArgumentException
+            Logging.log("Unable to spill " + name + " to disk, keeping it in memory: " + e);
+            return new InMemoryDocument(Base64.getDecoder().decode(content), name, mimeType);
+        }
+    }
+
+    /**
+     * Move a large document created in memory (e.g. a signed document) to a temporary file.
+     */
+    public static DSSDocument spill(DSSDocument document) {
+        if (!(document instanceof InMemoryDocument inMemoryDocument) || !shouldSpill(inMemoryDocument.getBytes().length))
+            return document;
+
+        try {
+            return write(document.openStream(), document.getName(), document.getMimeType());
+        } catch (IOException e) {
+            Logging.log("Unable to spill " + document.getName() + " to disk, keeping it in memory: " + e);
+            return document;
+        }
+    }
+
+    /**
+     * Stream for content of unknown size, e.g. a multipart upload part, which is then read by {@link
+     * SpillingOutputStream#toDocument}.
+     */
+    public static SpillingOutputStream newOutputStream() {
+        return new SpillingOutputStream();
+    }
+
+    /**
+     * Delete the temporary file of a spilled document right away, the document cannot be read afterwards. Does
+     * nothing for documents which were not spilled.
+     */
+    public static void discard(DSSDocument document) {
+        if (document instanceof SpilledDocument spilledDocument)
+            spilledDocument.cleanable.clean();
+    }
+
+    private static DSSDocument write(InputStream content, String name, MimeType mimeType) throws IOException {
+        var file = Files.createTempFile(getDirectory(), "document-", ".tmp");
+        try (content) {
+            Files.copy(content, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+
+        return new SpilledDocument(file, name, mimeType);
+    }
+
+    private static synchronized Path getDirectory() throws IOException {
+        if (directory == null) {
+            var created = Files.createTempDirectory("autogram-spill-");
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> deleteDirectory(created)));
+            directory = created;
+        }
+
+        return directory;
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            Logging.log("Unable to delete spilled document " + file + ": " + e);
+        }
+    }
+
+    private static void deleteDirectory(Path directory) {
+        try (var files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(DocumentSpill::delete);
+        } catch (IOException e) {
+            Logging.log("Unable to delete spill directory " + directory + ": " + e);
+        }
+    }
+
+    private static class SpilledDocument extends FileDocument {
+        private final Cleaner.Cleanable cleanable;
+
+        SpilledDocument(Path file, String name, MimeType mimeType) {
+            super(file.toFile());
+            setName(name);
+            setMimeType(mimeType);
+            // the action must not reference the document, otherwise it would never become unreachable
+            cleanable = cleaner.register(this, () -> delete(file));
+        }
+    }
+
+    /**
+     * Content is kept in memory until it grows over the threshold, then it is moved to a temporary file and the rest
+     * is written straight to the file, so a large upload is never held in memory as a whole.
+     */
+    public static class SpillingOutputStream extends OutputStream {
+        private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        private Path file = null;
+        private OutputStream fileOut = null;
+        private boolean spillFailed = false;
+
+        private SpillingOutputStream() {
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            spillIfNeeded(1);
+            getTarget().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            spillIfNeeded(len);
+            getTarget().write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (fileOut != null)
+                fileOut.close();
+        }
+
+        /**
+         * Closes the stream, the content is not copied once more if it was spilled.
+         */
+        public DSSDocument toDocument(String name) throws IOException {
+            close();
+            if (file != null)
+                return new SpilledDocument(file, name, null);
+
+            var document = new InMemoryDocument(memory.toByteArray(), name);
+            memory = null;
+            return document;
+        }
+
+        /**
+         * Delete the temporary file if the content is not going to be used, e.g. when the upload was malformed.
+         */
+        public void discard() {
+            try {
+                close();
+            } catch (IOException e) {
+                Logging.log("Unable to close spilled document " + file + ": " + e);
+            }
+
+            if (file != null)
+                delete(file);
+        }
+
+        private OutputStream getTarget() {
+            return fileOut != null ? fileOut : memory;
+        }
+
+        private void spillIfNeeded(int len) {
+            if (memory == null || spillFailed || !shouldSpill((long) memory.size() + len))
+                return;
+
+            Path created = null;
+            try {
+                created = Files.createTempFile(getDirectory(), "document-", ".tmp");
+                var out = new BufferedOutputStream(Files.newOutputStream(created));
+                try {
+                    memory.writeTo(out);
+                } catch (IOException e) {
+                    out.close();
+                    throw e;
+                }
+
+                fileOut = out;
+                file = created;
+                memory = null;
+            } catch (IOException e) {
+                spillFailed = true;
+                if (created != null)
+                    delete(created);
+
+                Logging.log("Unable to spill upload to disk, keeping it in memory: " + e);
+            }
+        }
+    }
+
+    /**
+     * ASCII view of a String (base64 content) as a stream, without copying it into a byte array first.
+     */
+    private static class CharSequenceInputStream extends InputStream {
+        private final CharSequence content;
+        private int position = 0;
+
+        CharSequenceInputStream(CharSequence content) {
+            this.content = content;
+        }
+
+        @Override
+        public int read() {
+            return position < content.length() ? content.charAt(position++) & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0)
+                return 0;
+
+            if (position >= content.length())
+                return -1;
+
+            var count = Math.min(len, content.length() - position);
+            for (int i = 0; i < count; i++)
+                b[off + i] = (byte) content.charAt(position++);
+
+            return count;
+        }
+    }
+}
@@ -6,4 +6,12 @@ public abstract class Responder {
     abstract public void onDocumentSigned(SignedDocument signedDocument);
 
     abstract public void onDocumentSignFailed(AutogramException error);
+
+    /**
+     * @return true if the signed document is still used after onDocumentSigned returns, e.g. until it is fetched.
+     * Otherwise its temporary file is deleted right away, see {@link DocumentSpill#discard}.
+     */
+    public boolean keepsSignedDocument() {
+        return false;
+    }
 }
@@ -0,0 +1,80 @@
+package digital.slovensko.autogram.core;
+
+import eu.europa.esig.dss.asic.cades.signature.ASiCWithCAdESService;
+import eu.europa.esig.dss.asic.xades.signature.ASiCWithXAdESService;
+import eu.europa.esig.dss.cades.signature.CAdESService;
+import eu.europa.esig.dss.enumerations.SignatureLevel;
+import eu.europa.esig.dss.pades.signature.PAdESService;
+import eu.europa.esig.dss.spi.x509.tsp.TSPSource;
+import eu.europa.esig.dss.validation.CommonCertificateVerifier;
+import eu.europa.esig.dss.xades.signature.XAdESService;
+
+/**
+ * DSS signature services shared by all signing jobs.
+ *
+ * DSS services keep no per-document state (everything goes through parameters), so one instance per signature
+ * form can be used by concurrent jobs. Only ASiC-XAdES at XAdES_BASELINE_T and PAdES at PAdES_BASELINE_T signatures
+ * are timestamped, their services with the TSP source are rebuilt when the TSP source changes in settings. All other
+ * services have no TSP source and do not depend on it.
+ */
+public class SignatureServices {
+    private static final CommonCertificateVerifier certificateVerifier = new CommonCertificateVerifier();
+    private static final XAdESService xadesService = new XAdESService(certificateVerifier);
+    private static final CAdESService cadesService = new CAdESService(certificateVerifier);
+    private static final PAdESService padesService = new PAdESService(certificateVerifier);
+    private static final ASiCWithXAdESService asicWithXAdESService = new ASiCWithXAdESService(certificateVerifier);
+    private static final ASiCWithCAdESService asicWithCAdESService = new ASiCWithCAdESService(certificateVerifier);
+
+    private static volatile SignatureServices current;
+
+    private final TSPSource tspSource;
+    private final PAdESService timestampingPAdESService;
+    private final ASiCWithXAdESService timestampingASiCWithXAdESService;
+
+    private SignatureServices(TSPSource tspSource) {
+        this.tspSource = tspSource;
+        if (tspSource == null) {
+            timestampingPAdESService = padesService;
+            timestampingASiCWithXAdESService = asicWithXAdESService;
+            return;
+        }
+
+        timestampingPAdESService = new PAdESService(certificateVerifier);
+        timestampingPAdESService.setTspSource(tspSource);
+        timestampingASiCWithXAdESService = new ASiCWithXAdESService(certificateVerifier);
+        timestampingASiCWithXAdESService.setTspSource(tspSource);
+    }
+
+    public static SignatureServices forTspSource(TSPSource tspSource) {
+        var services = current;
+        if (services != null && services.tspSource == tspSource)
+            return services;
+
+        synchronized (SignatureServices.class) {
+            if (current == null || current.tspSource != tspSource)
+                current = new SignatureServices(tspSource);
+
+            return current;
+        }
+    }
+
+    public XAdESService getXAdESService() {
+        return xadesService;
+    }
+
+    public CAdESService getCAdESService() {
+        return cadesService;
+    }
+
+    public PAdESService getPAdESService(SignatureLevel level) {
+        return level == SignatureLevel.PAdES_BASELINE_T ? timestampingPAdESService : padesService;
+    }
+
+    public ASiCWithXAdESService getASiCWithXAdESService(SignatureLevel level) {
+        return level == SignatureLevel.XAdES_BASELINE_T ? timestampingASiCWithXAdESService : asicWithXAdESService;
+    }
+
+    public ASiCWithCAdESService getASiCWithCAdESService() {
+        return asicWithCAdESService;
+    }
+}
@@ -20,6 +20,7 @@ import org.slf4j.LoggerFactory;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
+import digital.slovensko.autogram.util.SignatureSniffer;
 import digital.slovensko.autogram.util.XMLUtils;
 import eu.europa.esig.dss.enumerations.SignatureLevel;
 import eu.europa.esig.dss.model.DSSDocument;
@@ -48,6 +49,8 @@ public class SignatureValidator {
     private static final String OJ_URL = "https://eur-lex.europa.eu/legal-content/EN/TXT/?uri=uriserv:OJ.C_.2019.276.01.0001.01.ENG";
     private CertificateVerifier verifier;
     private TLValidationJob validationJob;
+    // published after each refresh, read without the lock so e.g. a metrics scrape does not wait for validation
+    private volatile boolean tlsLoaded = false;
     private static Logger logger = LoggerFactory.getLogger(SignatureValidator.class);
 
     // Singleton
@@ -72,6 +75,7 @@ public class SignatureValidator {
 
     public synchronized void refresh() {
         validationJob.offlineRefresh();
+        updateTLsLoaded();
     }
 
     public synchronized void initialize(ExecutorService executorService, List<String> tlCountries) {
@@ -106,6 +110,7 @@ public class SignatureValidator {
 
         logger.debug("Starting signature validator offline refresh");
         validationJob.offlineRefresh();
+        updateTLsLoaded();
 
         verifier = new CommonCertificateVerifier();
         verifier.setTrustedCertSources(trustedListCertificateSource);
@@ -165,7 +170,14 @@ public class SignatureValidator {
         return new ValidationReports(validator.validateDocument(), job);
     }
 
+    /**
+     * Documents without signatures are recognized by {@link SignatureSniffer} first, only signed (or unrecognized)
+     * documents are validated to read the format of their first signature.
+     */
     public static SignatureLevel getSignedDocumentSignatureLevel(DSSDocument document) {
+        if (SignatureSniffer.isUnsigned(document))
+            return null;
+
         var validator = createDocumentValidator(document);
         if (validator == null)
             return null;
@@ -178,8 +190,12 @@ public class SignatureValidator {
         return report.getSignatureFormat(report.getSignatureIdList().get(0));
     }
 
-    public synchronized boolean areTLsLoaded() {
+    public boolean areTLsLoaded() {
         // TODO: consider validation turned off as well
-        return validationJob.getSummary().getNumberOfProcessedTLs() > 0;
+        return tlsLoaded;
+    }
+
+    private void updateTLsLoaded() {
+        tlsLoaded = validationJob.getSummary().getNumberOfProcessedTLs() > 0;
     }
 }
@@ -2,44 +2,79 @@ package digital.slovensko.autogram.core;
 
 import java.io.File;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import digital.slovensko.autogram.core.eforms.EFormUtils;
 import digital.slovensko.autogram.core.eforms.XDCBuilder;
 import digital.slovensko.autogram.core.eforms.XDCValidator;
 import digital.slovensko.autogram.core.errors.AutogramException;
+import digital.slovensko.autogram.core.errors.SigningParametersException;
+import digital.slovensko.autogram.core.metrics.Histogram;
+import digital.slovensko.autogram.core.metrics.Metrics;
 import digital.slovensko.autogram.util.Logging;
-import eu.europa.esig.dss.asic.cades.signature.ASiCWithCAdESService;
-import eu.europa.esig.dss.asic.xades.signature.ASiCWithXAdESService;
-import eu.europa.esig.dss.cades.signature.CAdESService;
+import eu.europa.esig.dss.AbstractSignatureParameters;
 import eu.europa.esig.dss.enumerations.DigestAlgorithm;
 import eu.europa.esig.dss.enumerations.SignatureLevel;
 import eu.europa.esig.dss.model.DSSDocument;
+import eu.europa.esig.dss.model.DigestDocument;
 import eu.europa.esig.dss.model.FileDocument;
-import eu.europa.esig.dss.pades.signature.PAdESService;
+import eu.europa.esig.dss.model.SignatureValue;
+import eu.europa.esig.dss.model.ToBeSigned;
 import eu.europa.esig.dss.service.http.commons.TimestampDataLoader;
 import eu.europa.esig.dss.service.tsp.OnlineTSPSource;
+import eu.europa.esig.dss.signature.DocumentSignatureService;
+import eu.europa.esig.dss.signature.MultipleDocumentsSignatureService;
 import eu.europa.esig.dss.spi.DSSUtils;
 import eu.europa.esig.dss.spi.x509.tsp.TSPSource;
-import eu.europa.esig.dss.validation.CommonCertificateVerifier;
-import eu.europa.esig.dss.xades.signature.XAdESService;
 
 import static digital.slovensko.autogram.core.AutogramMimeType.*;
 
 public class SigningJob {
+    private static final String PHASE_METRIC = "autogram_signing_phase_seconds";
+    private static final String PHASE_HELP = "Duration of signing phases";
+    private static final Histogram DATA_TO_SIGN_TIME = Metrics.histogram(PHASE_METRIC, PHASE_HELP, "phase", "dataToSign");
+    private static final Histogram TOKEN_SIGN_TIME = Metrics.histogram(PHASE_METRIC, PHASE_HELP, "phase", "tokenSign");
+    private static final Histogram SIGN_DOCUMENT_TIME = Metrics.histogram(PHASE_METRIC, PHASE_HELP, "phase", "signDocument");
+
     private final Responder responder;
     private final DSSDocument document;
+    private final List<DSSDocument> additionalDocuments;
     private final SigningParameters parameters;
+    /** null unless the job was built with buildForPreparation */
+    private final Consumer<PreparedSignature> onPrepared;
 
-    private SigningJob(DSSDocument document, SigningParameters parameters, Responder responder) {
+    private SigningJob(DSSDocument document, List<DSSDocument> additionalDocuments, SigningParameters parameters,
+            Responder responder, Consumer<PreparedSignature> onPrepared) {
         this.document = document;
+        this.additionalDocuments = additionalDocuments;
         this.parameters = parameters;
         this.responder = responder;
+        this.onPrepared = onPrepared;
     }
 
     public DSSDocument getDocument() {
         return this.document;
     }
 
+    /**
+     * Documents signed together with the main document into the same ASiC-E container, empty for most jobs.
+     */
+    public List<DSSDocument> getAdditionalDocuments() {
+        return additionalDocuments;
+    }
+
+    private List<DSSDocument> getDocuments() {
+        var documents = new ArrayList<DSSDocument>();
+        documents.add(getDocument());
+        documents.addAll(getAdditionalDocuments());
+
+        return documents;
+    }
+
     public SigningParameters getParameters() {
         return parameters;
     }
@@ -49,118 +84,175 @@ public class SigningJob {
     }
 
     public void signWithKeyAndRespond(SigningKey key) throws InterruptedException, AutogramException {
+        var prepared = prepare(key);
+        if (onPrepared != null) {
+            // the client builds the signed document itself, the document is not needed anymore
+            try {
+                onPrepared.accept(prepared);
+            } finally {
+                discardDocuments();
+            }
+            return;
+        }
 
-        Logging.log("Signing Job: " + this.hashCode() + " file " + getDocument().getName());
-        boolean isContainer = getParameters().getContainer() != null;
-        var doc = switch (getParameters().getSignatureType()) {
-            case XAdES -> isContainer ? signDocumentAsAsiCWithXAdeS(key) : signDocumentAsXAdeS(key);
-            case CAdES -> isContainer ? signDocumentAsASiCWithCAdeS(key) : signDocumentAsCAdeS(key);
-            case PAdES -> signDocumentAsPAdeS(key);
-            default -> throw new RuntimeException(
-                    "Unsupported signature type: " + getParameters().getSignatureType());
-        };
-        responder.onDocumentSigned(new SignedDocument(doc, key.getCertificate()));
+        prepared.sign();
+        prepared.finishAndRespond();
     }
 
     public void onDocumentSignFailed(AutogramException e) {
-        responder.onDocumentSignFailed(e);
+        try {
+            responder.onDocumentSignFailed(e);
+        } finally {
+            discardDocuments();
+        }
     }
 
-    private DSSDocument signDocumentAsCAdeS(SigningKey key) {
-        var commonCertificateVerifier = new CommonCertificateVerifier();
-        var service = new CAdESService(commonCertificateVerifier);
-        var jobParameters = getParameters();
-        var signatureParameters = getParameters().getCAdESSignatureParameters();
-
-        signatureParameters.setSigningCertificate(key.getCertificate());
-        signatureParameters.setCertificateChain(key.getCertificateChain());
-        signatureParameters.setSignWithExpiredCertificate(true);
+    /**
+     * Delete temporary files of spilled documents once the job has responded, it cannot be signed again.
+     */
+    private void discardDocuments() {
+        getDocuments().forEach(DocumentSpill::discard);
+    }
 
-        var dataToSign = service.getDataToSign(getDocument(), signatureParameters);
-        var signatureValue = key.sign(dataToSign, jobParameters.getDigestAlgorithm());
+    /**
+     * First signing phase, builds the data to be signed by the token. Does not touch the token, so it can run
+     * concurrently with signing of other documents.
+     */
+    public PreparedSignature prepare(SigningKey key) {
+        Logging.log("Signing Job: " + this.hashCode() + " file " + getDocument().getName());
+        var services = SignatureServices.forTspSource(getParameters().getTspSource());
+        var level = getParameters().getLevel();
+        boolean isContainer = getParameters().getContainer() != null;
+        if (!getAdditionalDocuments().isEmpty()) {
+            return switch (getParameters().getSignatureType()) {
+                case XAdES -> prepareMultiple(key, services.getASiCWithXAdESService(level), getParameters().getASiCWithXAdESSignatureParameters());
+                case CAdES -> prepareMultiple(key, services.getASiCWithCAdESService(), getParameters().getASiCWithCAdESSignatureParameters());
+                default -> throw new RuntimeException(
+                        "Unsupported signature type for multiple documents: " + getParameters().getSignatureType());
+            };
+        }
 
-        return service.signDocument(getDocument(), signatureParameters, signatureValue);
+        return switch (getParameters().getSignatureType()) {
+            case XAdES -> isContainer
+                    ? prepare(key, services.getASiCWithXAdESService(level), getParameters().getASiCWithXAdESSignatureParameters())
+                    : prepare(key, services.getXAdESService(), getParameters().getXAdESSignatureParameters());
+            case CAdES -> isContainer
+                    ? prepare(key, services.getASiCWithCAdESService(), getParameters().getASiCWithCAdESSignatureParameters())
+                    : prepare(key, services.getCAdESService(), getParameters().getCAdESSignatureParameters());
+            case PAdES -> prepare(key, services.getPAdESService(level), getParameters().getPAdESSignatureParameters());
+            default -> throw new RuntimeException(
+                    "Unsupported signature type: " + getParameters().getSignatureType());
+        };
     }
 
-    private DSSDocument signDocumentAsAsiCWithXAdeS(SigningKey key) {
-        var commonCertificateVerifier = new CommonCertificateVerifier();
-        var service = new ASiCWithXAdESService(commonCertificateVerifier);
-        var signatureParameters = getParameters().getASiCWithXAdESSignatureParameters();
-
+    private <SP extends AbstractSignatureParameters<?>> PreparedSignature prepare(SigningKey key,
+            DocumentSignatureService<SP, ?> service, SP signatureParameters) {
         signatureParameters.setSigningCertificate(key.getCertificate());
         signatureParameters.setCertificateChain(key.getCertificateChain());
         signatureParameters.setSignWithExpiredCertificate(true);
 
-        if (signatureParameters.getSignatureLevel().equals(SignatureLevel.XAdES_BASELINE_T))
-            service.setTspSource(getParameters().getTspSource());
-
-        var dataToSign = service.getDataToSign(getDocument(), signatureParameters);
-        var signatureValue = key.sign(dataToSign, getParameters().getDigestAlgorithm());
+        var dataToSign = DATA_TO_SIGN_TIME.time(() -> service.getDataToSign(getDocument(), signatureParameters));
 
-        return service.signDocument(getDocument(), signatureParameters, signatureValue);
+        return new PreparedSignature(key, dataToSign, signatureParameters.bLevel().getSigningDate(),
+                (signatureValue) -> service.signDocument(getDocument(), signatureParameters, signatureValue));
     }
 
-    private DSSDocument signDocumentAsXAdeS(SigningKey key) {
-        var commonCertificateVerifier = new CommonCertificateVerifier();
-        var service = new XAdESService(commonCertificateVerifier);
-        var jobParameters = getParameters();
-        var signatureParameters = getParameters().getXAdESSignatureParameters();
-
+    /**
+     * All documents go into one container with one signature, so the token is used only once for the whole list.
+     */
+    private <SP extends AbstractSignatureParameters<?>> PreparedSignature prepareMultiple(SigningKey key,
+            MultipleDocumentsSignatureService<SP, ?> service, SP signatureParameters) {
         signatureParameters.setSigningCertificate(key.getCertificate());
         signatureParameters.setCertificateChain(key.getCertificateChain());
         signatureParameters.setSignWithExpiredCertificate(true);
 
-        var dataToSign = service.getDataToSign(getDocument(), signatureParameters);
-        var signatureValue = key.sign(dataToSign, jobParameters.getDigestAlgorithm());
+        var documents = getDocuments();
+        var dataToSign = DATA_TO_SIGN_TIME.time(() -> service.getDataToSign(documents, signatureParameters));
 
-        return service.signDocument(getDocument(), signatureParameters, signatureValue);
+        return new PreparedSignature(key, dataToSign, signatureParameters.bLevel().getSigningDate(),
+                (signatureValue) -> service.signDocument(documents, signatureParameters, signatureValue));
     }
 
-    private DSSDocument signDocumentAsASiCWithCAdeS(SigningKey key) {
-        var commonCertificateVerifier = new CommonCertificateVerifier();
-        var service = new ASiCWithCAdESService(commonCertificateVerifier);
-        var jobParameters = getParameters();
-        var signatureParameters = getParameters().getASiCWithCAdESSignatureParameters();
-
-        signatureParameters.setSigningCertificate(key.getCertificate());
-        signatureParameters.setCertificateChain(key.getCertificateChain());
-        signatureParameters.setSignWithExpiredCertificate(true);
-
-        var dataToSign = service.getDataToSign(getDocument(), signatureParameters);
-        var signatureValue = key.sign(dataToSign, jobParameters.getDigestAlgorithm());
+    /**
+     * Signature with data to sign ready. {@link #sign()} is the only phase using the token and must not run
+     * concurrently with other token operations, {@link #finishAndRespond()} builds the signed document.
+     */
+    public class PreparedSignature {
+        private final SigningKey key;
+        private final ToBeSigned dataToSign;
+        private final Date signingDate;
+        private final Function<SignatureValue, DSSDocument> signDocument;
+        private SignatureValue signatureValue;
+
+        private PreparedSignature(SigningKey key, ToBeSigned dataToSign, Date signingDate,
+                Function<SignatureValue, DSSDocument> signDocument) {
+            this.key = key;
+            this.dataToSign = dataToSign;
+            this.signingDate = signingDate;
+            this.signDocument = signDocument;
+        }
 
-        return service.signDocument(getDocument(), signatureParameters, signatureValue);
-    }
+        public SigningJob getJob() {
+            return SigningJob.this;
+        }
 
-    private DSSDocument signDocumentAsPAdeS(SigningKey key) {
-        var commonCertificateVerifier = new CommonCertificateVerifier();
-        var service = new PAdESService(commonCertificateVerifier);
-        var jobParameters = getParameters();
-        var signatureParameters = getParameters().getPAdESSignatureParameters();
+        public SigningKey getKey() {
+            return key;
+        }
 
-        signatureParameters.setSigningCertificate(key.getCertificate());
-        signatureParameters.setCertificateChain(key.getCertificateChain());
-        signatureParameters.setSignWithExpiredCertificate(true);
+        public ToBeSigned getDataToSign() {
+            return dataToSign;
+        }
 
-        if (signatureParameters.getSignatureLevel().equals(SignatureLevel.PAdES_BASELINE_T))
-            service.setTspSource(getParameters().getTspSource());
+        /**
+         * Signing time in the signed attributes, the same one must be used to build the signed document.
+         */
+        public Date getSigningDate() {
+            return signingDate;
+        }
 
-        var dataToSign = service.getDataToSign(getDocument(), signatureParameters);
-        var signatureValue = key.sign(dataToSign, jobParameters.getDigestAlgorithm());
+        public void sign() {
+            signatureValue = TOKEN_SIGN_TIME.time(() -> key.sign(dataToSign, getParameters().getDigestAlgorithm()));
+        }
 
-        return service.signDocument(getDocument(), signatureParameters, signatureValue);
+        public void finishAndRespond() {
+            if (signatureValue == null)
+                throw new IllegalStateException("Document was not signed by the token yet");
+
+            var doc = SIGN_DOCUMENT_TIME.time(() -> DocumentSpill.spill(signDocument.apply(signatureValue)));
+            Metrics.counter("autogram_signed_documents_total", "Number of signed documents",
+                    "type", getParameters().getSignatureType().name()).inc();
+            try {
+                responder.onDocumentSigned(new SignedDocument(doc, key.getCertificate()));
+            } finally {
+                discardDocuments();
+                if (!responder.keepsSignedDocument())
+                    DocumentSpill.discard(doc);
+            }
+        }
     }
 
     public static FileDocument createDSSFileDocumentFromFile(File file) {
         var fileDocument = new FileDocument(file);
 
-        if (isXDC(fileDocument.getMimeType()) || isXML(fileDocument.getMimeType()) && XDCValidator.isXDCContent(fileDocument))
+        if (isXDC(fileDocument.getMimeType()) || isXML(fileDocument.getMimeType()) && XDCValidator.hasXDCRootElement(fileDocument))
             fileDocument.setMimeType(AutogramMimeType.XML_DATACONTAINER);
 
         return fileDocument;
     }
 
-    private static SigningJob build(DSSDocument document, SigningParameters params, Responder responder) {
+    private static SigningJob build(DSSDocument document, List<DSSDocument> additionalDocuments,
+            SigningParameters params, Responder responder, Consumer<PreparedSignature> onPrepared) {
+        if (!additionalDocuments.isEmpty()) {
+            if (!params.supportsMultipleDocuments())
+                throw new SigningParametersException("Nesprávny typ podpisu",
+                        "Viacero dokumentov je možné podpísať iba do kontajnera ASiC-E s podpisom XAdES alebo CAdES");
+
+            if (isAsice(document.getMimeType()))
+                throw new SigningParametersException("Nesprávny typ dokumentu",
+                        "Do existujúceho kontajnera ASiC-E nie je možné pridať ďalšie dokumenty");
+        }
+
         if (params.shouldCreateXdc()) {
             var mimeType = document.getMimeType();
             if (!isXDC(mimeType) && !isAsice(mimeType)) {
@@ -169,17 +261,34 @@ public class SigningJob {
             }
         }
 
-        return new SigningJob(document, params, responder);
+        return new SigningJob(document, List.copyOf(additionalDocuments), params, responder, onPrepared);
     }
 
     public static SigningJob buildFromRequest(DSSDocument document, SigningParameters params, Responder responder) {
-        return build(document, params, responder);
+        return build(document, List.of(), params, responder, null);
+    }
+
+    /**
+     * Job which only builds the data to sign with the key picked by the user and passes it to onPrepared instead of
+     * signing, the token signs it later and the caller builds the signed document. Failures still go to the responder.
+     */
+    public static SigningJob buildForPreparation(DSSDocument document, SigningParameters params,
+            Consumer<PreparedSignature> onPrepared, Responder responder) {
+        return build(document, List.of(), params, responder, onPrepared);
+    }
+
+    /**
+     * @param additionalDocuments signed together with the document into one ASiC-E container
+     */
+    public static SigningJob buildFromRequest(DSSDocument document, List<DSSDocument> additionalDocuments,
+            SigningParameters params, Responder responder) {
+        return build(document, additionalDocuments, params, responder, null);
     }
 
     public static SigningJob buildFromFile(File file, Responder responder, boolean checkPDFACompliance, SignatureLevel signatureType, boolean isEn319132, TSPSource tspSource) {
         var document = createDSSFileDocumentFromFile(file);
         var parameters = getParametersForFile(document, checkPDFACompliance, signatureType, isEn319132, tspSource);
-        return build(document, parameters, responder);
+        return build(document, List.of(), parameters, responder, null);
     }
 
     private static SigningParameters getParametersForFile(FileDocument document, boolean checkPDFACompliance, SignatureLevel signatureType, boolean isEn319132, TSPSource tspSource) {
@@ -211,6 +320,13 @@ public class SigningJob {
     }
 
     public boolean shouldCheckPDFCompliance() {
-        return parameters.getCheckPDFACompliance() && isPDF(document.getMimeType());
+        return parameters.getCheckPDFACompliance() && isPDF(document.getMimeType()) && !isDigestOnly();
+    }
+
+    /**
+     * Only the digest of the document is known, its content cannot be read.
+     */
+    public boolean isDigestOnly() {
+        return document instanceof DigestDocument;
     }
 }
@@ -11,20 +11,38 @@ import eu.europa.esig.dss.model.ToBeSigned;
 import eu.europa.esig.dss.model.x509.CertificateToken;
 import eu.europa.esig.dss.token.AbstractKeyStoreTokenConnection;
 import eu.europa.esig.dss.token.DSSPrivateKeyEntry;
+import eu.europa.esig.dss.token.Pkcs12SignatureToken;
 
 public class SigningKey {
     final AbstractKeyStoreTokenConnection token;
     final DSSPrivateKeyEntry privateKey;
+    private final Runnable onClose;
 
     public SigningKey(AbstractKeyStoreTokenConnection token, DSSPrivateKeyEntry privateKey) {
+        this(token, privateKey, token::close);
+    }
+
+    /**
+     * @param onClose called instead of closing the token, e.g. to return a cached token session
+     */
+    public SigningKey(AbstractKeyStoreTokenConnection token, DSSPrivateKeyEntry privateKey, Runnable onClose) {
         this.token = token;
         this.privateKey = privateKey;
+        this.onClose = onClose;
     }
 
     public SignatureValue sign(ToBeSigned dataToSign, DigestAlgorithm algo) {
         return token.sign(dataToSign, algo, privateKey);
     }
 
+    /**
+     * Keys of a software keystore are in memory and DSS creates a new Signature for every sign call, so they can
+     * sign on several threads at once. Hardware tokens sign one document at a time.
+     */
+    public boolean supportsConcurrentSigning() {
+        return token instanceof Pkcs12SignatureToken;
+    }
+
     public CertificateToken getCertificate() {
         return privateKey.getCertificate();
     }
@@ -44,6 +62,6 @@ public class SigningKey {
     }
 
     public void close() {
-        token.close();
+        onClose.run();
     }
 }
@@ -18,6 +18,7 @@ import eu.europa.esig.dss.enumerations.SignatureForm;
 import eu.europa.esig.dss.enumerations.SignatureLevel;
 import eu.europa.esig.dss.enumerations.SignaturePackaging;
 import eu.europa.esig.dss.model.DSSDocument;
+import eu.europa.esig.dss.model.DigestDocument;
 import eu.europa.esig.dss.pades.PAdESSignatureParameters;
 import eu.europa.esig.dss.spi.x509.tsp.TSPSource;
 import eu.europa.esig.dss.xades.XAdESSignatureParameters;
@@ -106,7 +107,9 @@ public class SigningParameters {
 
         parameters.setSignatureLevel(getLevel());
         parameters.setDigestAlgorithm(getDigestAlgorithm());
-        parameters.setSignaturePackaging(SignaturePackaging.ENVELOPING);
+        // detached only for document digests, otherwise the document is always inside the CMS
+        parameters.setSignaturePackaging(packaging == SignaturePackaging.DETACHED ? SignaturePackaging.DETACHED
+                : SignaturePackaging.ENVELOPING);
         parameters.setEn319122(isEn319132());
 
         return parameters;
@@ -137,6 +140,14 @@ public class SigningParameters {
         return level.getSignatureForm();
     }
 
+    /**
+     * Several documents can be signed together only into one ASiC-E container with a XAdES or CAdES signature.
+     */
+    public boolean supportsMultipleDocuments() {
+        return asicContainer == ASiCContainerType.ASiC_E
+                && (getSignatureType() == SignatureForm.XAdES || getSignatureType() == SignatureForm.CAdES);
+    }
+
     public ASiCContainerType getContainer() {
         return asicContainer;
     }
@@ -218,7 +229,7 @@ public class SigningParameters {
 
         var extractedDocument = document;
         var mimeType = document.getMimeType();
-        if (isAsice(mimeType))
+        if (isAsice(mimeType) && !(document instanceof DigestDocument))
             extractedDocument = AsicContainerUtils.getOriginalDocument(document);
 
         if (autoLoadEform && (isAsice(mimeType) || isXML(mimeType) || isXDC(mimeType))) {
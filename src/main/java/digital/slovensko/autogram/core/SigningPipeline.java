@@ -0,0 +1,310 @@
+package digital.slovensko.autogram.core;
+
+import digital.slovensko.autogram.core.metrics.Counter;
+import digital.slovensko.autogram.core.metrics.Metrics;
+import digital.slovensko.autogram.util.Logging;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static digital.slovensko.autogram.core.Configuration.getProperty;
+
+/**
+ * Pipelined signing of batch documents.
+ *
+ * preparation (getDataToSign, parallel) -> token (single thread) -> finalization (signDocument and response, parallel)
+ *
+ * The token stage runs on the given token executor, which is the TOKEN pool of WorkScheduler in the app, so batch
+ * signatures never use the token concurrently with key picking or other signing.
+ *
+ * Stages are connected through bounded queues, so documents do not pile up in memory while the token keeps working
+ * on the next prepared document. Preparation and software key threads block when the next queue is full. The token
+ * stage never blocks, it shares the TOKEN thread with all other token work: it signs the next document only when
+ * finalization has room for it and is resumed by finalization otherwise.
+ *
+ * Documents are submitted in lanes (one per batch). The token stage takes documents from the lanes round robin, so
+ * concurrent batches sharing the token progress evenly instead of in submission order.
+ *
+ * Keys of software keystores have no token to wait for, their documents are signed on a parallel stage instead.
+ */
+public class SigningPipeline {
+    private static final String STAGE_METRIC = "autogram_signing_pipeline_documents_total";
+    private static final String STAGE_HELP = "Number of documents passed through a signing pipeline stage";
+    private static final Counter PREPARED = Metrics.counter(STAGE_METRIC, STAGE_HELP, "stage", "prepare");
+    private static final Counter SIGNED = Metrics.counter(STAGE_METRIC, STAGE_HELP, "stage", "token");
+    private static final Counter SIGNED_IN_SOFTWARE = Metrics.counter(STAGE_METRIC, STAGE_HELP, "stage", "software");
+    private static final Counter FINISHED = Metrics.counter(STAGE_METRIC, STAGE_HELP, "stage", "finish");
+
+    private static final Object DEFAULT_LANE = new Object();
+
+    private final ThreadPoolExecutor preparation;
+    private final FairTokenStage token;
+    private final ThreadPoolExecutor software;
+    private final ThreadPoolExecutor finalization;
+    private final Semaphore finalizationSlots;
+
+    public SigningPipeline(int preparationThreads, int finalizationThreads, int queueCapacity,
+            Executor tokenExecutor) {
+        this(preparationThreads, finalizationThreads, queueCapacity, Runtime.getRuntime().availableProcessors(),
+                tokenExecutor);
+    }
+
+    /**
+     * @param tokenExecutor single threaded executor of all token operations
+     */
+    public SigningPipeline(int preparationThreads, int finalizationThreads, int queueCapacity, int softwareKeyThreads,
+            Executor tokenExecutor) {
+        preparation = createStage("prepare", preparationThreads, queueCapacity);
+        software = createStage("software", softwareKeyThreads, queueCapacity);
+        // every document queued for or in finalization holds a slot, so its queue is never full
+        finalizationSlots = new Semaphore(queueCapacity);
+        finalization = createStage("finish", finalizationThreads, queueCapacity);
+        token = new FairTokenStage(queueCapacity, finalizationSlots, tokenExecutor);
+    }
+
+    public static SigningPipeline fromConfiguration(Executor tokenExecutor) {
+        var softwareKeyThreads = Integer.parseInt(getProperty("batch.pipeline.softwareKeyThreads"));
+        if (softwareKeyThreads <= 0)
+            softwareKeyThreads = Runtime.getRuntime().availableProcessors();
+
+        return new SigningPipeline(
+                Integer.parseInt(getProperty("batch.pipeline.preparationThreads")),
+                Integer.parseInt(getProperty("batch.pipeline.finalizationThreads")),
+                Integer.parseInt(getProperty("batch.pipeline.queueCapacity")),
+                softwareKeyThreads, tokenExecutor);
+    }
+
+    /**
+     * Sign the job with the key and respond through its responder. Blocks while the preparation queue is full.
+     *
+     * @return future completed after the job responded, or exceptionally if any stage failed
+     */
+    public CompletableFuture<Void> submit(SigningJob job, SigningKey key) {
+        return submit(job, key, DEFAULT_LANE, () -> {});
+    }
+
+    /**
+     * @param lane      documents of the same lane (batch) are signed by the token in submission order
+     * @param onStarted called on the preparation thread when the job leaves the queue
+     */
+    public CompletableFuture<Void> submit(SigningJob job, SigningKey key, Object lane, Runnable onStarted) {
+        var isSoftwareKey = key != null && key.supportsConcurrentSigning();
+
+        var preparing = CompletableFuture.supplyAsync(() -> {
+            onStarted.run();
+            var prepared = job.prepare(key);
+            PREPARED.inc();
+            return prepared;
+        }, preparation);
+
+        CompletableFuture<SigningJob.PreparedSignature> signing;
+        if (isSoftwareKey) {
+            signing = preparing.thenApplyAsync((prepared) -> {
+                prepared.sign();
+                SIGNED_IN_SOFTWARE.inc();
+                acquireFinalizationSlot();
+                return prepared;
+            }, software);
+        } else {
+            // the token stage takes the finalization slot before it runs the task
+            signing = preparing.thenApplyAsync((prepared) -> {
+                try {
+                    prepared.sign();
+                } catch (RuntimeException e) {
+                    token.releaseFinalizationSlot();
+                    throw e;
+                }
+                SIGNED.inc();
+                return prepared;
+            }, (runnable) -> token.execute(lane, runnable));
+        }
+
+        return signing.thenAcceptAsync((prepared) -> {
+            try {
+                prepared.finishAndRespond();
+                FINISHED.inc();
+            } finally {
+                token.releaseFinalizationSlot();
+            }
+        }, finalization);
+    }
+
+    public void shutdown() {
+        preparation.shutdown();
+        token.shutdown();
+        software.shutdown();
+        finalization.shutdown();
+    }
+
+    private void acquireFinalizationSlot() {
+        try {
+            finalizationSlots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException(e);
+        }
+    }
+
+    private static ThreadPoolExecutor createStage(String name, int threads, int queueCapacity) {
+        var counter = new AtomicInteger();
+        var executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), (runnable) -> {
+                    var thread = new Thread(runnable, "signing-" + name + "-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        // block the previous stage instead of rejecting, this is what keeps the queues bounded
+        executor.setRejectedExecutionHandler((runnable, e) -> {
+            if (e.isShutdown())
+                throw new RejectedExecutionException("Signing pipeline is shut down");
+
+            try {
+                e.getQueue().put(runnable);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException(ex);
+            }
+        });
+
+        return executor;
+    }
+
+    /**
+     * Token stage taking tasks round robin from per-lane queues. Every queued task schedules one run on the token
+     * executor, which picks the next lane only when it gets to run, so the order stays fair however the executor
+     * interleaves it with other token work. The total number of queued tasks is bounded, execute blocks while it
+     * is full.
+     *
+     * A run takes one of the finalization slots before it runs a task. When there is none, the run is deferred and
+     * rescheduled when a slot is released, so the token thread is free for other token work meanwhile.
+     */
+    static class FairTokenStage {
+        private final Semaphore capacity;
+        private final Semaphore finalizationSlots;
+        private final Executor tokenExecutor;
+        private final Map<Object, Queue<Runnable>> lanes = new HashMap<>();
+        private final Deque<Object> readyLanes = new ArrayDeque<>();
+        private int deferredRuns = 0;
+        private volatile boolean isShutdown = false;
+
+        FairTokenStage(int queueCapacity, Semaphore finalizationSlots, Executor tokenExecutor) {
+            this.capacity = new Semaphore(queueCapacity);
+            this.finalizationSlots = finalizationSlots;
+            this.tokenExecutor = tokenExecutor;
+        }
+
+        void execute(Object lane, Runnable task) {
+            if (isShutdown)
+                throw new RejectedExecutionException("Signing pipeline is shut down");
+
+            try {
+                capacity.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException(e);
+            }
+
+            synchronized (this) {
+                var queue = lanes.computeIfAbsent(lane, (key) -> new ArrayDeque<>());
+                if (queue.isEmpty())
+                    readyLanes.addLast(lane);
+
+                queue.add(task);
+            }
+
+            try {
+                tokenExecutor.execute(this::runNext);
+            } catch (RejectedExecutionException e) {
+                synchronized (this) {
+                    var queue = lanes.get(lane);
+                    queue.remove(task);
+                    if (queue.isEmpty()) {
+                        lanes.remove(lane);
+                        readyLanes.remove(lane);
+                    }
+                }
+                capacity.release();
+                throw e;
+            }
+        }
+
+        /**
+         * Called when a document taking a finalization slot is finished or failed to sign, resumes a deferred run.
+         */
+        void releaseFinalizationSlot() {
+            boolean resume;
+            synchronized (this) {
+                finalizationSlots.release();
+                resume = deferredRuns > 0;
+                if (resume)
+                    deferredRuns--;
+            }
+
+            if (!resume)
+                return;
+
+            try {
+                tokenExecutor.execute(this::runNext);
+            } catch (RejectedExecutionException e) {
+                // keep it deferred, the next released slot tries again
+                synchronized (this) {
+                    deferredRuns++;
+                }
+                Logging.log("Token stage run deferred again: " + e);
+            }
+        }
+
+        void shutdown() {
+            isShutdown = true;
+        }
+
+        private synchronized Runnable poll() {
+            var lane = readyLanes.pollFirst();
+            if (lane == null)
+                return null;
+
+            var queue = lanes.get(lane);
+            var task = queue.poll();
+            if (queue.isEmpty())
+                lanes.remove(lane);
+            else
+                readyLanes.addLast(lane);
+
+            capacity.release();
+            return task;
+        }
+
+        private void runNext() {
+            synchronized (this) {
+                if (!finalizationSlots.tryAcquire()) {
+                    deferredRuns++;
+                    return;
+                }
+            }
+
+            var task = poll();
+            if (task == null) {
+                releaseFinalizationSlot();
+                return;
+            }
+
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Logging.log("Token stage task failed: " + e);
+            }
+        }
+    }
+}
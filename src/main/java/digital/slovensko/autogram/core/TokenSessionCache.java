@@ -0,0 +1,144 @@
+package digital.slovensko.autogram.core;
+
+import digital.slovensko.autogram.core.metrics.Counter;
+import digital.slovensko.autogram.core.metrics.Metrics;
+import digital.slovensko.autogram.drivers.TokenDriver;
+import digital.slovensko.autogram.util.Logging;
+import eu.europa.esig.dss.token.AbstractKeyStoreTokenConnection;
+import eu.europa.esig.dss.token.DSSPrivateKeyEntry;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static digital.slovensko.autogram.core.Configuration.getProperty;
+
+/**
+ * Open token connections by driver path and slot, so picking a key again does not initialize the token, log in
+ * and enumerate its keys again (seconds on eID cards).
+ *
+ * A session is in use while a signing key created from it is open. Sessions idle for token.session.idleTimeoutSeconds
+ * are closed by {@link #evictIdle()}, which also runs on every {@link #open}. A session of a removed token is replaced
+ * on the next open or dropped right away by {@link #invalidate}.
+ */
+public class TokenSessionCache {
+    private static final String SESSIONS_METRIC = "autogram_token_sessions_total";
+    private static final String SESSIONS_HELP = "Number of token sessions requested when picking a signing key";
+    private static final Counter OPENED = Metrics.counter(SESSIONS_METRIC, SESSIONS_HELP, "result", "opened");
+    private static final Counter REUSED = Metrics.counter(SESSIONS_METRIC, SESSIONS_HELP, "result", "reused");
+
+    private final Duration idleTimeout;
+    private final Map<String, Session> sessions = new HashMap<>();
+
+    public TokenSessionCache(Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public static TokenSessionCache fromConfiguration() {
+        return new TokenSessionCache(Duration.ofSeconds(Long.parseLong(getProperty("token.session.idleTimeoutSeconds"))));
+    }
+
+    /**
+     * @return open session for the driver and slot, a new one if there is none or its token was removed. The idle
+     * timeout of the session starts over, so it stays open while the user picks a key.
+     */
+    public synchronized Session open(TokenDriver driver, PasswordManager passwordManager,
+            SignatureTokenSettings settings) {
+        evictIdle();
+
+        var cacheKey = driver.getPath() + "#" + settings.getSlotIndex();
+        var session = sessions.get(cacheKey);
+        if (session != null && !driver.isTokenPresent(session.token)) {
+            Logging.log("Token session " + cacheKey + " is not usable anymore, opening a new one");
+            remove(session);
+            session = null;
+        }
+
+        if (session != null) {
+            // the key is picked only after this returns, do not let the session expire while the user picks it
+            session.idleSinceNanos = System.nanoTime();
+            REUSED.inc();
+            return session;
+        }
+
+        session = new Session(cacheKey, driver.createToken(passwordManager, settings));
+        sessions.put(cacheKey, session);
+        OPENED.inc();
+
+        return session;
+    }
+
+    /**
+     * Drop and close the session of a token which was removed or failed.
+     */
+    public synchronized void invalidate(AbstractKeyStoreTokenConnection token) {
+        sessions.values().stream().filter((session) -> session.token == token).toList().forEach(this::remove);
+    }
+
+    public synchronized void evictIdle() {
+        var now = System.nanoTime();
+        sessions.values().stream()
+                .filter((session) -> session.users == 0 && now - session.idleSinceNanos >= idleTimeout.toNanos())
+                .toList().forEach(this::remove);
+    }
+
+    public synchronized void closeAll() {
+        List.copyOf(sessions.values()).forEach(this::remove);
+    }
+
+    private synchronized void acquire(Session session) {
+        session.users++;
+    }
+
+    private synchronized void release(Session session) {
+        session.users = Math.max(0, session.users - 1);
+        session.idleSinceNanos = System.nanoTime();
+    }
+
+    private void remove(Session session) {
+        if (!sessions.remove(session.cacheKey, session))
+            return;
+
+        try {
+            session.token.close();
+        } catch (RuntimeException e) {
+            Logging.log("Closing token session " + session.cacheKey + " failed: " + e);
+        }
+    }
+
+    public class Session {
+        private final String cacheKey;
+        private final AbstractKeyStoreTokenConnection token;
+        private List<DSSPrivateKeyEntry> keys;
+        private int users = 0;
+        private long idleSinceNanos = System.nanoTime();
+
+        private Session(String cacheKey, AbstractKeyStoreTokenConnection token) {
+            this.cacheKey = cacheKey;
+            this.token = token;
+        }
+
+        public AbstractKeyStoreTokenConnection getToken() {
+            return token;
+        }
+
+        /**
+         * Keys are enumerated only once per session.
+         */
+        public synchronized List<DSSPrivateKeyEntry> getKeys() {
+            if (keys == null)
+                keys = token.getKeys();
+
+            return keys;
+        }
+
+        /**
+         * The session stays in use until the returned key is closed.
+         */
+        public SigningKey createSigningKey(DSSPrivateKeyEntry privateKey) {
+            acquire(this);
+            return new SigningKey(token, privateKey, () -> release(this));
+        }
+    }
+}
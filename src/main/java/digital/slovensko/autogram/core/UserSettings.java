@@ -1,8 +1,8 @@
 package digital.slovensko.autogram.core;
 
+import digital.slovensko.autogram.core.tsp.HedgedTSPSource;
 import digital.slovensko.autogram.ui.gui.SignatureLevelStringConverter;
 import eu.europa.esig.dss.enumerations.SignatureLevel;
-import eu.europa.esig.dss.service.tsp.OnlineTSPSource;
 import eu.europa.esig.dss.spi.x509.tsp.TSPSource;
 
 import java.util.ArrayList;
@@ -192,11 +192,12 @@ public class UserSettings implements PasswordManagerSettings, SignatureTokenSett
 
     public void setTsaServer(String value) {
         tsaServer = value;
+        closeTspSource();
         if (value == null)
             tspSource = null;
 
         else
-            tspSource = new OnlineTSPSource(tsaServer);
+            tspSource = HedgedTSPSource.fromConfiguration(tsaServer);
     }
 
     public String getCustomTsaServer() {
@@ -211,6 +212,14 @@ public class UserSettings implements PasswordManagerSettings, SignatureTokenSett
         return tspSource;
     }
 
+    /**
+     * Release the request threads of the TSP source, e.g. when it is replaced or the app exits.
+     */
+    public void closeTspSource() {
+        if (tspSource instanceof HedgedTSPSource hedgedTspSource)
+            hedgedTspSource.close();
+    }
+
     public boolean getTsaEnabled() {
         return tsaEnabled;
     }
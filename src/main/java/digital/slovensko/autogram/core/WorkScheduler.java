@@ -0,0 +1,181 @@
+package digital.slovensko.autogram.core;
+
+import digital.slovensko.autogram.core.metrics.Histogram;
+import digital.slovensko.autogram.core.metrics.Metrics;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static digital.slovensko.autogram.core.Configuration.getProperty;
+
+/**
+ * Background work of the UIs, split by the kind of work so that e.g. a slow TSA or a PIN prompt does not hold up
+ * document visualization.
+ *
+ * CPU - visualization, XSLT, validation; work.cpuThreads threads
+ * IO - network (TSA, OCSP, trusted lists, updates); up to work.ioThreads threads, idle ones are released
+ * TOKEN - smart card and keystore operations; one thread, token operations are never run concurrently
+ *
+ * Each pool queues up to work.queueCapacity tasks. Tasks over it are rejected with RejectedExecutionException instead
+ * of piling up in memory, so a burst of requests fails fast rather than delaying all later work.
+ */
+public class WorkScheduler {
+    public enum Kind {
+        CPU, IO, TOKEN
+    }
+
+    /** Kind of the pool the current thread belongs to, null outside the pools */
+    private static final ThreadLocal<Kind> workerKind = new ThreadLocal<>();
+
+    private final Map<Kind, ThreadPoolExecutor> executors = new EnumMap<>(Kind.class);
+    private final Map<Kind, Histogram> waitTimes = new EnumMap<>(Kind.class);
+    private final Map<Kind, Histogram> runTimes = new EnumMap<>(Kind.class);
+
+    public WorkScheduler(int cpuThreads, int ioThreads) {
+        this(cpuThreads, ioThreads, 1000);
+    }
+
+    public WorkScheduler(int cpuThreads, int ioThreads, int queueCapacity) {
+        executors.put(Kind.CPU, createExecutor(Kind.CPU, cpuThreads, queueCapacity));
+        executors.put(Kind.IO, createExecutor(Kind.IO, ioThreads, queueCapacity));
+        executors.put(Kind.TOKEN, createExecutor(Kind.TOKEN, 1, queueCapacity));
+
+        for (var kind : Kind.values()) {
+            var label = kind.name().toLowerCase();
+            var executor = executors.get(kind);
+
+            waitTimes.put(kind, Metrics.histogram("autogram_work_queue_wait_seconds",
+                    "Time background tasks spent waiting in the queue", "pool", label));
+            runTimes.put(kind, Metrics.histogram("autogram_work_task_seconds",
+                    "Time background tasks spent running", "pool", label));
+            Metrics.gauge("autogram_work_queue_size", "Background tasks waiting in the queue",
+                    () -> executor.getQueue().size(), "pool", label);
+            Metrics.gauge("autogram_work_active_tasks", "Background tasks running",
+                    executor::getActiveCount, "pool", label);
+
+            var rejected = Metrics.counter("autogram_work_rejected_tasks_total",
+                    "Background tasks rejected because the queue was full", "pool", label);
+            executor.setRejectedExecutionHandler((runnable, e) -> {
+                if (e.isShutdown())
+                    throw new RejectedExecutionException("Work scheduler is shut down");
+
+                rejected.inc();
+                throw new RejectedExecutionException("Too many " + label + " tasks waiting");
+            });
+        }
+    }
+
+    public static WorkScheduler fromConfiguration() {
+        return new WorkScheduler(Integer.parseInt(getProperty("work.cpuThreads")),
+                Integer.parseInt(getProperty("work.ioThreads")),
+                Integer.parseInt(getProperty("work.queueCapacity")));
+    }
+
+    /**
+     * @throws RejectedExecutionException if the queue of the pool is full or the scheduler is shut down
+     */
+    public void execute(Kind kind, Runnable task) {
+        var submitted = System.nanoTime();
+        executors.get(kind).execute(() -> {
+            var started = System.nanoTime();
+            waitTimes.get(kind).observeNanos(started - submitted);
+            try {
+                task.run();
+            } finally {
+                runTimes.get(kind).observeSince(started);
+            }
+        });
+    }
+
+    /**
+     * @return executor submitting to the pool of the given kind, e.g. for stages that must share the TOKEN thread
+     */
+    public Executor executor(Kind kind) {
+        return (task) -> execute(kind, task);
+    }
+
+    /**
+     * Run the task on the pool and wait for it. Tasks started from a worker thread of the same pool run inline, so
+     * nested calls cannot deadlock on a pool waiting for itself, tasks started from other pools are still submitted,
+     * e.g. TOKEN work from a CPU worker does not run concurrently with the TOKEN thread. Runtime exceptions of the
+     * task are rethrown.
+     */
+    public void executeAndWait(Kind kind, Runnable task) {
+        if (currentKind() == kind) {
+            task.run();
+            return;
+        }
+
+        var future = new CompletableFuture<Void>();
+        execute(kind, () -> {
+            try {
+                task.run();
+                future.complete(null);
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException)
+                throw runtimeException;
+
+            if (e.getCause() instanceof Error error)
+                throw error;
+
+            throw e;
+        }
+    }
+
+    public static boolean isWorkerThread() {
+        return currentKind() != null;
+    }
+
+    /**
+     * @return kind of the pool the current thread belongs to, null if it is not a worker thread
+     */
+    public static Kind currentKind() {
+        return workerKind.get();
+    }
+
+    /**
+     * Stop accepting tasks and wait up to timeout for running ones, then interrupt them.
+     */
+    public void shutdown(Duration timeout) throws InterruptedException {
+        executors.values().forEach(ThreadPoolExecutor::shutdown);
+
+        var deadline = System.nanoTime() + timeout.toNanos();
+        for (var executor : executors.values()) {
+            if (!executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS))
+                executor.shutdownNow();
+        }
+    }
+
+    private static ThreadPoolExecutor createExecutor(Kind kind, int threads, int queueCapacity) {
+        var counter = new AtomicInteger();
+        var executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity),
+                (runnable) -> {
+                    var thread = new Thread(() -> {
+                        workerKind.set(kind);
+                        runnable.run();
+                    }, "work-" + kind.name().toLowerCase() + "-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
+    }
+}
@@ -11,6 +11,8 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
@@ -27,6 +29,31 @@ import eu.europa.esig.dss.model.DSSDocument;
 
 public abstract class XDCValidator {
     private static final Charset ENCODING = StandardCharsets.UTF_8;
+    private static final String XDC_XMLNS = "http://data.gov.sk/def/container/xmldatacontainer+xml/1.1";
+
+    /**
+     * Quick check of the root element only, reading just the start of the document. Unlike
+     * {@link #isXDCContent(DSSDocument)} it does not validate the container against its XSD, that is left for
+     * {@link #validateXml} when the document is signed.
+     */
+    public static boolean hasXDCRootElement(DSSDocument document) {
+        try (var is = document.openStream()) {
+            var reader = XMLUtils.getSecureXMLInputFactory().createXMLStreamReader(is);
+            try {
+                while (reader.hasNext())
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT)
+                        return reader.getLocalName().equals("XMLDataContainer")
+                                && XDC_XMLNS.equals(reader.getNamespaceURI());
+
+                return false;
+            } finally {
+                reader.close();
+            }
+
+        } catch (IOException | XMLStreamException | RuntimeException e) {
+            return false;
+        }
+    }
 
     public static boolean isXDCContent(DSSDocument document) {
         try {
@@ -0,0 +1,8 @@
+package digital.slovensko.autogram.core.errors;
+
+public class SigningKeyNotAvailableException extends AutogramException {
+    public SigningKeyNotAvailableException() {
+        super("Podpisový kľúč nie je dostupný", "Dokument bol pripravený na podpis iným kľúčom",
+                "Vybraný podpisový kľúč sa zmenil alebo bol odpojený. Skúste zopakovať podpisovanie od začiatku.");
+    }
+}
@@ -0,0 +1,18 @@
+package digital.slovensko.autogram.core.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class Counter {
+    private final LongAdder value = new LongAdder();
+
+    Counter() {
+    }
+
+    public void inc() {
+        value.increment();
+    }
+
+    public long get() {
+        return value.sum();
+    }
+}
@@ -0,0 +1,18 @@
+package digital.slovensko.autogram.core.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Value read at scrape time, e.g. a queue size.
+ */
+public class Gauge {
+    private final LongSupplier value;
+
+    Gauge(LongSupplier value) {
+        this.value = value;
+    }
+
+    public long get() {
+        return value.getAsLong();
+    }
+}
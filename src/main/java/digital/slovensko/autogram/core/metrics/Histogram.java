@@ -0,0 +1,71 @@
+package digital.slovensko.autogram.core.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Latency histogram in seconds with fixed buckets. Every bucket is a LongAdder, so concurrent observations
+ * do not contend on a shared lock or cache line.
+ */
+public class Histogram {
+    // signing includes waiting for the user, so buckets go up to minutes
+    static final double[] BUCKETS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 120, 300};
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS.length];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+
+    Histogram() {
+        for (int i = 0; i < buckets.length; i++)
+            buckets[i] = new LongAdder();
+    }
+
+    public void observeNanos(long nanos) {
+        var seconds = nanos / 1e9;
+        for (int i = 0; i < BUCKETS.length; i++) {
+            if (seconds <= BUCKETS[i]) {
+                buckets[i].increment();
+                break;
+            }
+        }
+
+        count.increment();
+        sumNanos.add(nanos);
+    }
+
+    public void observeSince(long startNanos) {
+        observeNanos(System.nanoTime() - startNanos);
+    }
+
+    public <T> T time(Supplier<T> supplier) {
+        var start = System.nanoTime();
+        try {
+            return supplier.get();
+        } finally {
+            observeSince(start);
+        }
+    }
+
+    /**
+     * Cumulative bucket counts as required by the text format, the last one is +Inf.
+     */
+    long[] getCumulativeCounts() {
+        var counts = new long[BUCKETS.length + 1];
+        long total = 0;
+        for (int i = 0; i < BUCKETS.length; i++) {
+            total += buckets[i].sum();
+            counts[i] = total;
+        }
+        counts[BUCKETS.length] = Math.max(total, count.sum());
+
+        return counts;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    double getSumSeconds() {
+        return sumNanos.sum() / 1e9;
+    }
+}
@@ -0,0 +1,124 @@
+package digital.slovensko.autogram.core.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide registry of counters, gauges and histograms, exported in Prometheus text format by /metrics.
+ *
+ * Look metrics up once and keep them in a field where possible, the lookup itself is only a ConcurrentHashMap get.
+ */
+public class Metrics {
+    private static final Map<String, Family<?>> families = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * @param labels label names and values, alternating
+     */
+    public static Counter counter(String name, String help, String... labels) {
+        return Metrics.<Counter>family(name, help, "counter").get(labels, key -> new Counter());
+    }
+
+    public static Histogram histogram(String name, String help, String... labels) {
+        return Metrics.<Histogram>family(name, help, "histogram").get(labels, key -> new Histogram());
+    }
+
+    /**
+     * Registering a gauge with the same name and labels again replaces the previous value supplier.
+     */
+    public static Gauge gauge(String name, String help, LongSupplier value, String... labels) {
+        var gauge = new Gauge(value);
+        Metrics.<Gauge>family(name, help, "gauge").metrics.put(formatLabels(labels), gauge);
+
+        return gauge;
+    }
+
+    public static void writeTo(StringBuilder out) {
+        families.values().stream().sorted((a, b) -> a.name.compareTo(b.name)).forEach(family -> family.writeTo(out));
+    }
+
+    public static String formatLabels(String... labels) {
+        if (labels.length == 0)
+            return "";
+
+        var sb = new StringBuilder("{");
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            if (i > 0)
+                sb.append(',');
+
+            sb.append(labels[i]).append("=\"").append(labels[i + 1]
+                    .replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n")).append('"');
+        }
+
+        return sb.append('}').toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Family<T> family(String name, String help, String type) {
+        var family = families.computeIfAbsent(name, key -> new Family<>(name, help, type));
+        if (!family.type.equals(type))
+            throw new IllegalArgumentException("Metric " + name + " is already registered as " + family.type);
+
+        return (Family<T>) family;
+    }
+
+    private static class Family<T> {
+        private final String name;
+        private final String help;
+        private final String type;
+        private final Map<String, T> metrics = new ConcurrentHashMap<>();
+
+        Family(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+
+        T get(String[] labels, Function<String, T> factory) {
+            var key = formatLabels(labels);
+            var metric = metrics.get(key);
+
+            return metric != null ? metric : metrics.computeIfAbsent(key, factory);
+        }
+
+        void writeTo(StringBuilder out) {
+            out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+
+            metrics.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(entry -> {
+                var labels = entry.getKey();
+                if (entry.getValue() instanceof Counter counter) {
+                    out.append(name).append(labels).append(' ').append(counter.get()).append('\n');
+                } else if (entry.getValue() instanceof Gauge gauge) {
+                    out.append(name).append(labels).append(' ').append(gauge.get()).append('\n');
+                } else if (entry.getValue() instanceof Histogram histogram) {
+                    writeHistogram(out, labels, histogram);
+                }
+            });
+        }
+
+        private void writeHistogram(StringBuilder out, String labels, Histogram histogram) {
+            var counts = histogram.getCumulativeCounts();
+            for (int i = 0; i < counts.length; i++) {
+                var le = i < Histogram.BUCKETS.length ? String.valueOf(Histogram.BUCKETS[i]) : "+Inf";
+                out.append(name).append("_bucket").append(withLabel(labels, "le", le)).append(' ')
+                        .append(counts[i]).append('\n');
+            }
+
+            out.append(name).append("_sum").append(labels).append(' ').append(histogram.getSumSeconds()).append('\n');
+            out.append(name).append("_count").append(labels).append(' ').append(histogram.getCount()).append('\n');
+        }
+
+        private static String withLabel(String labels, String name, String value) {
+            var label = name + "=\"" + value + "\"";
+            if (labels.isEmpty())
+                return "{" + label + "}";
+
+            return labels.substring(0, labels.length() - 1) + "," + label + "}";
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package digital.slovensko.autogram.core.tsp;
+
+import digital.slovensko.autogram.core.metrics.Counter;
+import digital.slovensko.autogram.core.metrics.Histogram;
+import digital.slovensko.autogram.core.metrics.Metrics;
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import eu.europa.esig.dss.model.TimestampBinary;
+import eu.europa.esig.dss.service.tsp.OnlineTSPSource;
+import eu.europa.esig.dss.spi.exception.DSSExternalResourceException;
+import eu.europa.esig.dss.spi.x509.tsp.TSPSource;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static digital.slovensko.autogram.core.Configuration.getProperty;
+
+/**
+ * TSP source with hedged requests.
+ *
+ * A request goes to the primary TSA first. When it takes longer than the p95 of recent primary requests, the same
+ * request also goes to the alternate TSA and whichever timestamp comes first is used. When the primary TSA fails,
+ * the alternate one is asked right away. Without an alternate TSA requests just go to the primary one. The request
+ * that loses is cancelled, which interrupts its thread and aborts its HTTP exchange.
+ *
+ * Hedged requests run on threads owned by the source, at most maxConcurrentRequests of them. When all are busy the
+ * request goes to the primary TSA on the calling thread without hedging. Close the source to release its threads.
+ */
+public class HedgedTSPSource implements TSPSource, AutoCloseable {
+    private static final String REQUEST_METRIC = "autogram_tsp_request_seconds";
+    private static final String REQUEST_HELP = "Time of timestamp requests to the TSA";
+    private static final Counter HEDGED = Metrics.counter("autogram_tsp_hedged_requests_total",
+            "Number of timestamp requests also sent to the alternate TSA");
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+
+    private final ThreadPoolExecutor requests;
+    private final TSPSource primary;
+    private final TSPSource alternate;
+    private final Histogram primaryTime = Metrics.histogram(REQUEST_METRIC, REQUEST_HELP, "tsa", "primary");
+    private final Histogram alternateTime = Metrics.histogram(REQUEST_METRIC, REQUEST_HELP, "tsa", "alternate");
+    private final LatencyWindow primaryLatencies = new LatencyWindow(128);
+    private final Duration initialHedgeDelay;
+    private final Duration minHedgeDelay;
+
+    /**
+     * @param alternate         null to disable hedging
+     * @param initialHedgeDelay hedge delay until enough primary requests were measured for a p95
+     * @param minHedgeDelay     lower bound of the hedge delay, so a fast TSA is not hedged on every small hiccup
+     */
+    public HedgedTSPSource(TSPSource primary, TSPSource alternate, Duration initialHedgeDelay, Duration minHedgeDelay) {
+        this(primary, alternate, initialHedgeDelay, minHedgeDelay, 16);
+    }
+
+    /**
+     * @param maxConcurrentRequests threads for hedged requests, idle ones are released
+     */
+    public HedgedTSPSource(TSPSource primary, TSPSource alternate, Duration initialHedgeDelay, Duration minHedgeDelay,
+            int maxConcurrentRequests) {
+        this.primary = primary;
+        this.alternate = alternate;
+        this.initialHedgeDelay = initialHedgeDelay;
+        this.minHedgeDelay = minHedgeDelay;
+        this.requests = new ThreadPoolExecutor(0, maxConcurrentRequests, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), (runnable) -> {
+                    var thread = new Thread(runnable, "tsp-request-" + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    public static HedgedTSPSource fromConfiguration(String tsaServer) {
+        var dataLoader = new HttpTimestampDataLoader(
+                Duration.ofSeconds(Long.parseLong(getProperty("tsp.connectTimeoutSeconds"))),
+                Duration.ofSeconds(Long.parseLong(getProperty("tsp.requestTimeoutSeconds"))));
+
+        var alternateUrl = getProperty("tsp.hedging.alternateUrl").strip();
+        var alternate = alternateUrl.isEmpty() || alternateUrl.equals(tsaServer)
+                ? null : new OnlineTSPSource(alternateUrl, dataLoader);
+
+        return new HedgedTSPSource(new OnlineTSPSource(tsaServer, dataLoader), alternate,
+                Duration.ofMillis(Long.parseLong(getProperty("tsp.hedging.initialDelayMillis"))),
+                Duration.ofMillis(Long.parseLong(getProperty("tsp.hedging.minDelayMillis"))),
+                Integer.parseInt(getProperty("tsp.hedging.maxConcurrentRequests")));
+    }
+
+    @Override
+    public TimestampBinary getTimeStampResponse(DigestAlgorithm digestAlgorithm, byte[] digest) {
+        if (alternate == null)
+            return request(primary, primaryTime, digestAlgorithm, digest);
+
+        var primaryResult = new CompletableFuture<TimestampBinary>();
+        Future<?> primaryRequest;
+        try {
+            primaryRequest = submit(primary, primaryTime, digestAlgorithm, digest, primaryResult);
+        } catch (RejectedExecutionException e) {
+            // all request threads are busy, do not hedge
+            return request(primary, primaryTime, digestAlgorithm, digest);
+        }
+
+        Future<?> alternateRequest = null;
+        try {
+            try {
+                return primaryResult.get(getHedgeDelay().toNanos(), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException | ExecutionException e) {
+                // slow or failed, ask the alternate TSA too
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DSSExternalResourceException("Timestamp request was interrupted", e);
+            }
+
+            var alternateResult = new CompletableFuture<TimestampBinary>();
+            try {
+                alternateRequest = submit(alternate, alternateTime, digestAlgorithm, digest, alternateResult);
+                HEDGED.inc();
+            } catch (RejectedExecutionException e) {
+                return await(primaryResult);
+            }
+
+            var result = new CompletableFuture<TimestampBinary>();
+            primaryResult.thenAccept(result::complete);
+            alternateResult.thenAccept(result::complete);
+
+            // fail only when both requests failed, with the error of the primary TSA
+            CompletableFuture.allOf(primaryResult, alternateResult).whenComplete((ignored, e) -> {
+                if (primaryResult.isCompletedExceptionally() && alternateResult.isCompletedExceptionally())
+                    primaryResult.exceptionally((primaryError) -> {
+                        result.completeExceptionally(unwrap(primaryError));
+                        return null;
+                    });
+            });
+
+            return await(result);
+        } finally {
+            // no-op for a finished request, interrupts the one that lost
+            primaryRequest.cancel(true);
+            if (alternateRequest != null)
+                alternateRequest.cancel(true);
+        }
+    }
+
+    /**
+     * Stop hedging, running requests finish and their threads end. Later requests go to the primary TSA on the
+     * calling thread, so a job still holding a replaced source can finish.
+     */
+    @Override
+    public void close() {
+        requests.shutdown();
+    }
+
+    private Future<?> submit(TSPSource source, Histogram time, DigestAlgorithm digestAlgorithm, byte[] digest,
+            CompletableFuture<TimestampBinary> result) {
+        return requests.submit(() -> {
+            try {
+                result.complete(request(source, time, digestAlgorithm, digest));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+    }
+
+    private static TimestampBinary await(CompletableFuture<TimestampBinary> result) {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (unwrap(e.getCause()) instanceof RuntimeException runtimeException)
+                throw runtimeException;
+
+            throw new CompletionException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DSSExternalResourceException("Timestamp request was interrupted", e);
+        }
+    }
+
+    private TimestampBinary request(TSPSource source, Histogram time, DigestAlgorithm digestAlgorithm, byte[] digest) {
+        var start = System.nanoTime();
+        try {
+            return source.getTimeStampResponse(digestAlgorithm, digest);
+        } finally {
+            // a cancelled request did not get to its end, its time says nothing about the TSA
+            if (!Thread.currentThread().isInterrupted()) {
+                var nanos = System.nanoTime() - start;
+                time.observeNanos(nanos);
+                if (source == primary)
+                    primaryLatencies.add(nanos);
+            }
+        }
+    }
+
+    Duration getHedgeDelay() {
+        var p95 = primaryLatencies.getPercentileNanos(0.95);
+        if (p95 < 0)
+            return initialHedgeDelay;
+
+        return Duration.ofNanos(Math.max(p95, minHedgeDelay.toNanos()));
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    /**
+     * Last latencies of requests, percentiles are computed from them once there are enough of them.
+     */
+    static class LatencyWindow {
+        private static final int MIN_SAMPLES = 20;
+
+        private final long[] samples;
+        private int size = 0;
+        private int next = 0;
+
+        LatencyWindow(int capacity) {
+            samples = new long[capacity];
+        }
+
+        synchronized void add(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+        }
+
+        /**
+         * @return -1 while there are too few samples
+         */
+        synchronized long getPercentileNanos(double percentile) {
+            if (size < MIN_SAMPLES)
+                return -1;
+
+            var sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.ceil(percentile * size) - 1];
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package digital.slovensko.autogram.core.tsp;
+
+import eu.europa.esig.dss.spi.client.http.DataLoader;
+import eu.europa.esig.dss.spi.exception.DSSExternalResourceException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Data loader of TSP sources on top of one shared java.net.http client, so connections to the TSA are kept open
+ * between requests instead of a new connection (and TLS handshake) for every timestamp.
+ */
+public class HttpTimestampDataLoader implements DataLoader {
+    private static final String TIMESTAMP_QUERY_CONTENT_TYPE = "application/timestamp-query";
+
+    private final transient HttpClient client;
+    private final Duration requestTimeout;
+    private String contentType = TIMESTAMP_QUERY_CONTENT_TYPE;
+
+    public HttpTimestampDataLoader(Duration connectTimeout, Duration requestTimeout) {
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.requestTimeout = requestTimeout;
+    }
+
+    @Override
+    public byte[] get(String url) {
+        return send(url, HttpRequest.newBuilder(URI.create(url)).GET());
+    }
+
+    @Override
+    public byte[] get(String url, boolean refresh) {
+        // nothing is cached, every request goes to the server
+        return get(url);
+    }
+
+    @Override
+    public DataAndUrl get(List<String> urlStrings) {
+        DSSExternalResourceException lastError = null;
+        for (var url : urlStrings) {
+            try {
+                return new DataAndUrl(url, get(url));
+            } catch (DSSExternalResourceException e) {
+                lastError = e;
+            }
+        }
+
+        throw lastError != null ? lastError : new DSSExternalResourceException("No URL to load data from");
+    }
+
+    @Override
+    public byte[] post(String url, byte[] content) {
+        return send(url, HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(content)));
+    }
+
+    @Override
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    private byte[] send(String url, HttpRequest.Builder request) {
+        try {
+            var response = client.send(request.timeout(requestTimeout).build(), HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 200)
+                throw new DSSExternalResourceException(url + " responded with HTTP " + response.statusCode());
+
+            return response.body();
+
+        } catch (IOException e) {
+            throw new DSSExternalResourceException("Request to " + url + " failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DSSExternalResourceException("Request to " + url + " was interrupted", e);
+        }
+    }
+}
@@ -23,14 +23,28 @@ public class DocumentVisualizationBuilder {
 
     private final DSSDocument document;
     private final SigningParameters parameters;
+    private final boolean useTransformation;
 
-    private DocumentVisualizationBuilder(DSSDocument document, SigningParameters parameters) {
+    private DocumentVisualizationBuilder(DSSDocument document, SigningParameters parameters, boolean useTransformation) {
         this.document = document;
         this.parameters = parameters;
+        this.useTransformation = useTransformation;
     }
 
     public static Visualization fromJob(SigningJob job) throws IOException, ParserConfigurationException, SAXException {
-        return new DocumentVisualizationBuilder(job.getDocument(), job.getParameters()).build(job);
+        return new DocumentVisualizationBuilder(job.getDocument(), job.getParameters(), true).build(job);
+    }
+
+    /**
+     * Preview of one of the documents signed together with the main document of the job. The transformation of the
+     * job belongs to the main document, so the additional document is shown as it is.
+     */
+    public static Visualization fromAdditionalDocument(SigningJob job, DSSDocument document)
+            throws IOException, ParserConfigurationException, SAXException {
+        if (!job.getAdditionalDocuments().contains(document))
+            throw new IllegalArgumentException("Document " + document.getName() + " is not signed by the job");
+
+        return new DocumentVisualizationBuilder(document, job.getParameters(), false).build(job);
     }
 
     private Visualization build(SigningJob job) throws IOException, ParserConfigurationException, SAXException {
@@ -40,6 +54,9 @@ public class DocumentVisualizationBuilder {
     private Visualization createVisualization(SigningJob job)
         throws IOException, ParserConfigurationException, SAXException {
 
+        if (job.isDigestOnly())
+            return new UnsupportedVisualization(job);
+
         var documentToDisplay = document;
         if (isAsice(documentToDisplay.getMimeType())) {
             try {
@@ -49,7 +66,7 @@ public class DocumentVisualizationBuilder {
             }
         }
 
-        var transformation = parameters.getTransformation();
+        var transformation = useTransformation ? parameters.getTransformation() : null;
 
         if (isDocumentSupportingTransformation(documentToDisplay) && isTranformationAvailable(transformation)) {
             var transformationOutputMimeType = parameters.getXsltDestinationType();
@@ -63,6 +80,9 @@ public class DocumentVisualizationBuilder {
             return new UnsupportedVisualization(job);
         }
 
+        if (documentToDisplay.getMimeType().equals(MimeTypeEnum.HTML) && !useTransformation)
+            return new HTMLVisualization(new String(documentToDisplay.openStream().readAllBytes(), StandardCharsets.UTF_8), job);
+
         if (documentToDisplay.getMimeType().equals(MimeTypeEnum.HTML))
             return new HTMLVisualization(EFormUtils.transform(documentToDisplay, transformation), job);
 
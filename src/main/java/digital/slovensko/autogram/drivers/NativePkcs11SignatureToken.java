@@ -17,17 +17,35 @@ import sun.security.pkcs11.wrapper.PKCS11;
 import sun.security.pkcs11.wrapper.PKCS11Constants;
 import sun.security.pkcs11.wrapper.PKCS11Exception;
 
-import java.lang.reflect.Field;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.security.GeneralSecurityException;
 import java.security.PrivateKey;
 import java.security.Signature;
 import java.security.spec.AlgorithmParameterSpec;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class NativePkcs11SignatureToken extends Pkcs11SignatureToken {
     private static final long CKU_CONTEXT_SPECIFIC = 2L;
+    private static final VarHandle SLOT_LIST_INDEX = findVarHandle(Pkcs11SignatureToken.class, "slotListIndex");
+
+    // Signature.sigSpi -> P11Signature.token -> Token.p11
+    // Signature.sigSpi -> P11Signature.session -> Session.id
+    // P11Key.keyIDHolder -> NativeKeyHolder.keyID
+    private static final InternalField SIG_SPI = new InternalField("sigSpi");
+    private static final InternalField TOKEN = new InternalField("token");
+    private static final InternalField P11 = new InternalField("p11");
+    private static final InternalField SESSION = new InternalField("session");
+    private static final InternalField SESSION_ID = new InternalField("id");
+    private static final InternalField KEY_ID_HOLDER = new InternalField("keyIDHolder");
+    private static final InternalField KEY_ID = new InternalField("keyID");
+
     private final PasswordManager passwordManager;
     private final SignatureTokenSettings settings;
+    private final Map<Long, Boolean> alwaysAuthenticateByKeyID = new ConcurrentHashMap<>();
+    private volatile Boolean protectedAuthenticationPath = null;
 
     public NativePkcs11SignatureToken(String pkcsPath, PasswordManager pm, SignatureTokenSettings settings) {
         super(pkcsPath, pm, -1, settings.getSlotIndex(), null);
@@ -35,6 +53,18 @@ public class NativePkcs11SignatureToken extends Pkcs11SignatureToken {
         this.settings = settings;
     }
 
+    /**
+     * Lists the keystore, which fails once the token was removed or its provider was closed.
+     */
+    public boolean isTokenPresent() {
+        try {
+            getKeyStore().size();
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
     private byte[] sign(final byte[] bytes, final String javaSignatureAlgorithm, final AlgorithmParameterSpec param, final DSSPrivateKeyEntry keyEntry) throws GeneralSecurityException {
         if (!(keyEntry instanceof KSPrivateKeyEntry)) {
             throw new IllegalArgumentException("Only KSPrivateKeyEntry are supported");
@@ -54,11 +84,25 @@ public class NativePkcs11SignatureToken extends Pkcs11SignatureToken {
 
     private void runContextSpecificLoginIfNeeded(Signature signature, PrivateKey pk) throws GeneralSecurityException {
         try {
-            // TODO cache & short-circuit
-            var p11 = getP11(signature);
-            var sessionId = getSessionId(signature);
+            var keyID = (long) KEY_ID.read(KEY_ID_HOLDER.read(pk));
+
+            // attributes do not change while the token is open, the card is asked only on the first signature
+            var alwaysAuthenticate = alwaysAuthenticateByKeyID.get(keyID);
+            if (Boolean.FALSE.equals(alwaysAuthenticate))
+                return;
+
+            var spi = SIG_SPI.read(signature);
+            var p11 = (PKCS11) P11.read(TOKEN.read(spi));
+            // sessions are taken from a pool for each signature, so the id cannot be cached
+            var sessionId = (long) SESSION_ID.read(SESSION.read(spi));
+            if (alwaysAuthenticate == null) {
+                alwaysAuthenticate = isAlwaysAuthenticate(p11, sessionId, keyID);
+                alwaysAuthenticateByKeyID.put(keyID, alwaysAuthenticate);
+                if (!alwaysAuthenticate)
+                    return;
+            }
 
-            if (isAlwaysAuthenticate(p11, sessionId, pk) && (settings.getForceContextSpecificLoginEnabled() || !isProtectedAuthenticationPath(p11, getSlotListIndex()))) {
+            if (settings.getForceContextSpecificLoginEnabled() || !isProtectedAuthenticationPath(p11)) {
                 var password = passwordManager.getContextSpecificPassword();
                 if (password == null) throw new PasswordNotProvidedException(); // handle password not provided
                 p11.C_Login(sessionId, CKU_CONTEXT_SPECIFIC, password);
@@ -73,8 +117,7 @@ public class NativePkcs11SignatureToken extends Pkcs11SignatureToken {
         }
     }
 
-    private static boolean isAlwaysAuthenticate(PKCS11 p11, long sessionId, PrivateKey pk) throws PKCS11Exception {
-        var keyID = getKeyID(pk);
+    private static boolean isAlwaysAuthenticate(PKCS11 p11, long sessionId, long keyID) throws PKCS11Exception {
         var attrs = new CK_ATTRIBUTE[]{new CK_ATTRIBUTE(PKCS11Constants.CKA_ALWAYS_AUTHENTICATE)};
 
         p11.C_GetAttributeValue(sessionId, keyID, attrs);
@@ -87,6 +130,19 @@ public class NativePkcs11SignatureToken extends Pkcs11SignatureToken {
         }
     }
 
+    /**
+     * The token is bound to one slot, so the flag is read from the card only once.
+     */
+    private boolean isProtectedAuthenticationPath(PKCS11 p11) throws PKCS11Exception {
+        var isProtected = protectedAuthenticationPath;
+        if (isProtected == null) {
+            isProtected = isProtectedAuthenticationPath(p11, (int) SLOT_LIST_INDEX.get(this));
+            protectedAuthenticationPath = isProtected;
+        }
+
+        return isProtected;
+    }
+
     private static boolean isProtectedAuthenticationPath(PKCS11 p11, int slotIndex) throws PKCS11Exception {
 
         var slotList = p11.C_GetSlotList(false);
@@ -100,69 +156,40 @@ public class NativePkcs11SignatureToken extends Pkcs11SignatureToken {
         return (p11.C_GetTokenInfo(slotId).flags & PKCS11Constants.CKF_PROTECTED_AUTHENTICATION_PATH) != 0;
     }
 
-    private int getSlotListIndex() {
-        try {
-            Field f = getClass().getSuperclass().getDeclaredField("slotListIndex");
-            f.setAccessible(true);
-            return (int) f.get(this);
+    /**
+     * Private field of SunPKCS11 needed for the context specific login. The handle is looked up once per runtime class
+     * of the holder, e.g. P11Signature and P11PSSSignature are unrelated classes with fields of the same name.
+     */
+    private static final class InternalField extends ClassValue<VarHandle> {
+        private final String name;
 
-        } catch (IllegalAccessException | NoSuchFieldException e) {
-            throw new RuntimeException(e);
+        InternalField(String name) {
+            this.name = name;
         }
-    }
 
-    private static long getKeyID(PrivateKey pk) {
-        try {
-            var keyIDHolderField = pk.getClass().getSuperclass().getDeclaredField("keyIDHolder");
-            keyIDHolderField.setAccessible(true);
-            var keyIDHolder = keyIDHolderField.get(pk);
-
-            var keyIDField = keyIDHolder.getClass().getDeclaredField("keyID");
-            keyIDField.setAccessible(true);
-
-            return (long) keyIDField.get(keyIDHolder);
-        } catch (IllegalAccessException | NoSuchFieldException e) {
-            throw new RuntimeException(e);
+        @Override
+        protected VarHandle computeValue(Class<?> type) {
+            return findVarHandle(type, name);
         }
-    }
-
-    private static long getSessionId(Signature signature) {
-        try {
-            Field sigSpiField = signature.getClass().getDeclaredField("sigSpi");
-            sigSpiField.setAccessible(true);
-            var sigSpi = sigSpiField.get(signature);
-
-            var sessionField = sigSpi.getClass().getDeclaredField("session");
-            sessionField.setAccessible(true);
-            var session = sessionField.get(sigSpi);
-
-            var idField = session.getClass().getDeclaredField("id");
-            idField.setAccessible(true);
 
-            return (long) idField.get(session);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+        Object read(Object holder) {
+            return get(holder.getClass()).get(holder);
         }
     }
 
-    private static PKCS11 getP11(Signature signature) {
-        try {
-            Field sigSpiField = signature.getClass().getDeclaredField("sigSpi");
-            sigSpiField.setAccessible(true);
-            var sigSpi = sigSpiField.get(signature);
-
-            var tokenField = sigSpi.getClass().getDeclaredField("token");
-            tokenField.setAccessible(true);
-            var token = tokenField.get(sigSpi);
-
-            var p11Field = token.getClass().getDeclaredField("p11");
-            p11Field.setAccessible(true);
-            var p11 = p11Field.get(token);
-
-            return (PKCS11) p11;
-        } catch (NoSuchFieldException | IllegalAccessException e) {
-            throw new RuntimeException(e);
+    private static VarHandle findVarHandle(Class<?> type, String name) {
+        for (var c = type; c != null; c = c.getSuperclass()) {
+            try {
+                var field = c.getDeclaredField(name);
+                return MethodHandles.privateLookupIn(c, MethodHandles.lookup()).unreflectVarHandle(field);
+            } catch (NoSuchFieldException e) {
+                // declared in a superclass
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
         }
+
+        throw new RuntimeException(new NoSuchFieldException(type.getName() + "." + name));
     }
 
     // mostly copy & paste just to call overridden private sign method
@@ -16,4 +16,9 @@ public class PKCS11TokenDriver extends TokenDriver {
     public AbstractKeyStoreTokenConnection createToken(PasswordManager pm, SignatureTokenSettings settings) {
         return new NativePkcs11SignatureToken(getPath().toString(), pm, settings);
     }
+
+    @Override
+    public boolean isTokenPresent(AbstractKeyStoreTokenConnection token) {
+        return token instanceof NativePkcs11SignatureToken nativeToken && nativeToken.isTokenPresent();
+    }
 }
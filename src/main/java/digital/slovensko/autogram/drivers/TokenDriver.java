@@ -34,6 +34,12 @@ public abstract class TokenDriver {
 
     public abstract AbstractKeyStoreTokenConnection createToken(PasswordManager pm, SignatureTokenSettings settings);
 
+    /**
+     * Health check of a token created by this driver before it is reused.
+     */
+    public boolean isTokenPresent(AbstractKeyStoreTokenConnection token) {
+        return true;
+    }
 
     public String getShortname() {
         return shortname;
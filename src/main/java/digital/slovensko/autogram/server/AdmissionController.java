@@ -0,0 +1,185 @@
+package digital.slovensko.autogram.server;
+
+import static digital.slovensko.autogram.core.Configuration.getProperty;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import digital.slovensko.autogram.server.errors.TooManyRequestsException;
+
+/**
+ * Caps number of in-flight sign requests and their total size, so that concurrent uploads cannot exhaust the heap
+ * with decoded documents. Size is taken from Content-Length, requests without it (chunked uploads) are admitted as a
+ * job and charged for their bytes while the body is read, they fail with 429 once the byte limit is exceeded.
+ *
+ * A request over the byte limit on its own is still admitted when nothing else is in flight, otherwise it could
+ * never be signed.
+ */
+public class AdmissionController {
+    private final int maxJobs;
+    private final long maxBytes;
+    private final int retryAfterSeconds;
+
+    private int inFlightJobs = 0;
+    private long inFlightBytes = 0;
+
+    public AdmissionController(int maxJobs, long maxBytes, int retryAfterSeconds) {
+        this.maxJobs = maxJobs;
+        this.maxBytes = maxBytes;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public static AdmissionController fromConfiguration() {
+        return new AdmissionController(
+                Integer.parseInt(getProperty("server.admission.maxJobs")),
+                Long.parseLong(getProperty("server.admission.maxBytes")),
+                Integer.parseInt(getProperty("server.admission.retryAfterSeconds")));
+    }
+
+    /**
+     * Admit the request or throw TooManyRequestsException with Retry-After header already set on the exchange.
+     * Request body of a request without Content-Length is replaced with a stream charging the permit, reading it
+     * throws TooManyRequestsException the same way.
+     */
+    public Permit acquire(HttpExchange exchange) throws TooManyRequestsException {
+        try {
+            var contentLength = getContentLength(exchange);
+            if (contentLength >= 0)
+                return tryAcquire(contentLength);
+
+            var permit = tryAcquire(0);
+            exchange.setStreams(new ChargingInputStream(exchange.getRequestBody(), permit, exchange), null);
+            return permit;
+        } catch (TooManyRequestsException e) {
+            setRetryAfter(exchange);
+            throw e;
+        }
+    }
+
+    public synchronized Permit tryAcquire(long bytes) throws TooManyRequestsException {
+        if (inFlightJobs >= maxJobs)
+            throw new TooManyRequestsException("Too many documents are being signed at once");
+
+        if (inFlightJobs > 0 && inFlightBytes + bytes > maxBytes)
+            throw new TooManyRequestsException("Too much data is being signed at once");
+
+        inFlightJobs++;
+        inFlightBytes += bytes;
+
+        return new Permit(bytes);
+    }
+
+    public synchronized int getInFlightJobs() {
+        return inFlightJobs;
+    }
+
+    public synchronized long getInFlightBytes() {
+        return inFlightBytes;
+    }
+
+    public int getMaxJobs() {
+        return maxJobs;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    private synchronized void release(Permit permit) {
+        inFlightJobs--;
+        inFlightBytes -= permit.bytes;
+    }
+
+    /**
+     * Charge bytes read from a body of unknown size, a request alone in flight is never rejected.
+     */
+    private synchronized void charge(Permit permit, long bytes) throws TooManyRequestsException {
+        if (permit.released.get())
+            return;
+
+        if (inFlightJobs > 1 && inFlightBytes + bytes > maxBytes)
+            throw new TooManyRequestsException("Too much data is being signed at once");
+
+        permit.bytes += bytes;
+        inFlightBytes += bytes;
+    }
+
+    private void setRetryAfter(HttpExchange exchange) {
+        exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+    }
+
+    /**
+     * @return Content-Length of the request, -1 if it is missing or invalid
+     */
+    private static long getContentLength(HttpExchange exchange) {
+        var contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (contentLength == null)
+            return -1;
+
+        try {
+            return Math.max(0, Long.parseLong(contentLength));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public class Permit {
+        /** Guarded by the controller */
+        private long bytes;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private Permit(long bytes) {
+            this.bytes = bytes;
+        }
+
+        /**
+         * Safe to call more than once, only the first call releases.
+         */
+        public void release() {
+            if (released.compareAndSet(false, true))
+                AdmissionController.this.release(this);
+        }
+    }
+
+    private class ChargingInputStream extends FilterInputStream {
+        private final Permit permit;
+        private final HttpExchange exchange;
+
+        ChargingInputStream(InputStream in, Permit permit, HttpExchange exchange) {
+            super(in);
+            this.permit = permit;
+            this.exchange = exchange;
+        }
+
+        @Override
+        public int read() throws IOException {
+            var b = super.read();
+            if (b >= 0)
+                chargeRead(1);
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            var n = super.read(b, off, len);
+            if (n > 0)
+                chargeRead(n);
+
+            return n;
+        }
+
+        private void chargeRead(long bytes) {
+            try {
+                charge(permit, bytes);
+            } catch (TooManyRequestsException e) {
+                setRetryAfter(exchange);
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package digital.slovensko.autogram.server;
+
+import digital.slovensko.autogram.core.Responder;
+import digital.slovensko.autogram.core.SignedDocument;
+import digital.slovensko.autogram.core.errors.AutogramException;
+
+/**
+ * Releases admission permit once the wrapped responder has responded.
+ */
+public class AdmittedResponder extends Responder {
+    private final Responder responder;
+    private final AdmissionController.Permit permit;
+
+    public AdmittedResponder(Responder responder, AdmissionController.Permit permit) {
+        this.responder = responder;
+        this.permit = permit;
+    }
+
+    @Override
+    public void onDocumentSigned(SignedDocument signedDocument) {
+        try {
+            responder.onDocumentSigned(signedDocument);
+        } finally {
+            permit.release();
+        }
+    }
+
+    @Override
+    public void onDocumentSignFailed(AutogramException error) {
+        try {
+            responder.onDocumentSignFailed(error);
+        } finally {
+            permit.release();
+        }
+    }
+
+    @Override
+    public boolean keepsSignedDocument() {
+        return responder.keepsSignedDocument();
+    }
+}
@@ -19,10 +19,12 @@ import com.sun.net.httpserver.HttpsServer;
 
 import digital.slovensko.autogram.core.Autogram;
 import digital.slovensko.autogram.server.filters.AutogramCorsFilter;
+import digital.slovensko.autogram.server.filters.MetricsFilter;
 
 public class AutogramServer {
     private final HttpServer server;
     private final Autogram autogram;
+    private final AdmissionController admissionController = AdmissionController.fromConfiguration();
 
     public AutogramServer(Autogram autogram, String hostname, int port, boolean isHttps, ExecutorService executorService) {
         this.autogram = autogram;
@@ -32,19 +34,40 @@ public class AutogramServer {
 
     public void start() {
         // Info
-        server.createContext("/info", new InfoEndpoint()).getFilters()
-                .add(new AutogramCorsFilter("GET"));
+        server.createContext("/info", new InfoEndpoint(admissionController)).getFilters()
+                .addAll(List.of(new MetricsFilter(), new AutogramCorsFilter("GET")));
 
         // Documentation
-        server.createContext("/docs", new DocumentationEndpoint());
+        server.createContext("/docs", new DocumentationEndpoint()).getFilters()
+                .add(new MetricsFilter());
+
+        // Metrics
+        server.createContext("/metrics", new MetricsEndpoint(admissionController)).getFilters()
+                .add(new AutogramCorsFilter("GET"));
 
         // Sign
-        server.createContext("/sign", new SignEndpoint(autogram)).getFilters()
-                .add(new AutogramCorsFilter("POST"));
+        server.createContext("/sign", new SignEndpoint(autogram, admissionController)).getFilters()
+                .addAll(List.of(new MetricsFilter(), new AutogramCorsFilter("POST")));
+
+        // Two-phase signing
+        var signingSessionEndpoint = new SigningSessionEndpoint(autogram, admissionController,
+                SigningSessionTokens.fromConfiguration());
+        server.createContext("/sign/prepare", signingSessionEndpoint).getFilters()
+                .addAll(List.of(new MetricsFilter(), new AutogramCorsFilter("POST")));
+        server.createContext("/sign/complete", signingSessionEndpoint).getFilters()
+                .addAll(List.of(new MetricsFilter(), new AutogramCorsFilter("POST")));
 
         // Batch
         server.createContext("/batch", new BatchEndpoint(autogram)).getFilters()
-                .add(new AutogramCorsFilter(List.of("POST", "DELETE")));
+                .addAll(List.of(new MetricsFilter(), new AutogramCorsFilter(List.of("POST", "GET", "DELETE"))));
+
+        server.createContext("/batch/sign", new BatchSignEndpoint(autogram, admissionController)).getFilters()
+                .addAll(List.of(new MetricsFilter(), new AutogramCorsFilter("POST")));
+
+        // Asynchronous jobs
+        server.createContext("/jobs", new JobsEndpoint(autogram, JobStore.fromConfiguration(), admissionController,
+                Integer.parseInt(getProperty("server.jobs.maxWaitingRequests")))).getFilters()
+                .addAll(List.of(new MetricsFilter(), new AutogramCorsFilter(List.of("POST", "GET"))));
 
         // Start server
         server.start();
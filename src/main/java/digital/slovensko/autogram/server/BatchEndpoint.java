@@ -6,6 +6,7 @@ import com.sun.net.httpserver.HttpHandler;
 import digital.slovensko.autogram.core.Autogram;
 import digital.slovensko.autogram.server.dto.BatchEndRequestBody;
 import digital.slovensko.autogram.server.dto.BatchStartRequestBody;
+import digital.slovensko.autogram.server.dto.BatchStatusResponseBody;
 import digital.slovensko.autogram.server.dto.ErrorResponse;
 import digital.slovensko.autogram.server.errors.MalformedBodyException;
 
@@ -28,6 +29,11 @@ public class BatchEndpoint implements HttpHandler {
                         BatchStartRequestBody.class);
                 autogram.batchStart(body.getTotalNumberOfDocuments(),
                         new BatchServerResponder(exchange));
+            } else if (requestMethod.equalsIgnoreCase("GET")) {
+                // Batch status
+                var batchId = exchange.getRequestURI().getPath().replaceFirst("^/batch/?", "");
+                EndpointUtils.respondWith(
+                        BatchStatusResponseBody.fromBatch(batchId, autogram.getBatchForStatus(batchId)), exchange);
             } else if (requestMethod.equalsIgnoreCase("DELETE")) {
                 // End batch
                 var body = EndpointUtils.loadFromJsonExchange(exchange,
@@ -0,0 +1,99 @@
+package digital.slovensko.autogram.server;
+
+import com.google.gson.JsonSyntaxException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import digital.slovensko.autogram.core.Autogram;
+import digital.slovensko.autogram.core.ResponderInBatch;
+import digital.slovensko.autogram.core.SigningJob;
+import digital.slovensko.autogram.core.errors.ResponseNetworkErrorException;
+import digital.slovensko.autogram.server.dto.BatchSignRequestBody;
+import digital.slovensko.autogram.server.dto.ErrorResponse;
+import digital.slovensko.autogram.server.errors.RequestValidationException;
+
+import java.io.IOException;
+
+/**
+ * Sign many documents of a started batch in one request, results are streamed back as NDJSON
+ * (see NdjsonBatchResponse) while the documents are being signed.
+ */
+public class BatchSignEndpoint implements HttpHandler {
+    private final Autogram autogram;
+    private final AdmissionController admissionController;
+
+    public BatchSignEndpoint(Autogram autogram, AdmissionController admissionController) {
+        this.autogram = autogram;
+        this.admissionController = admissionController;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        AdmissionController.Permit permit = null;
+        NdjsonBatchResponse response;
+        BatchSignRequestBody body;
+
+        try {
+            // the whole request is admitted at once, it holds all of its documents in memory
+            permit = admissionController.acquire(exchange);
+            body = EndpointUtils.loadFromJsonExchange(exchange, BatchSignRequestBody.class);
+            if (body.batchId() == null)
+                throw new RequestValidationException("BatchId is required", "");
+
+            if (body.documents() == null || body.documents().isEmpty())
+                throw new RequestValidationException("Documents are required", "");
+
+            autogram.getBatch(body.batchId());
+
+            exchange.getResponseHeaders().add("Content-Type", "application/x-ndjson");
+            exchange.sendResponseHeaders(200, 0);
+            var admittedPermit = permit;
+            response = new NdjsonBatchResponse(exchange.getResponseBody(), body.documents().size(), () -> {
+                // after the last record or after the client disconnected
+                admittedPermit.release();
+                exchange.close();
+            });
+
+        } catch (JsonSyntaxException | IOException e) {
+            if (permit != null)
+                permit.release();
+
+            var errorResponse = EndpointUtils.buildMalformedBodyError(e);
+            EndpointUtils.respondWithError(errorResponse, exchange);
+            return;
+
+        } catch (Exception e) {
+            if (permit != null)
+                permit.release();
+
+            EndpointUtils.respondWithError(ErrorResponse.buildFromException(e), exchange);
+            return;
+        }
+
+        for (int i = 0; i < body.documents().size(); i++) {
+            if (response.isBroken())
+                return; // client disconnected, no point in signing the rest
+
+            var document = body.documents().get(i);
+            try {
+                if (document == null)
+                    throw new RequestValidationException("Document is required", "");
+
+                document.validateDocument();
+                document.validateSigningParameters();
+
+                var responder = new ResponderInBatch(response.forDocument(i), autogram.getBatch(body.batchId()));
+                var job = SigningJob.buildFromRequest(document.getDocument(), document.getAdditionalDocuments(),
+                        document.getParameters(autogram.getTspSource()), responder);
+
+                autogram.batchSign(job, body.batchId());
+
+            } catch (Exception e) {
+                try {
+                    response.writeFailed(i, e);
+                } catch (ResponseNetworkErrorException networkError) {
+                    return;
+                }
+            }
+        }
+    }
+}
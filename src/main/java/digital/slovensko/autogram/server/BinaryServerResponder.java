@@ -0,0 +1,66 @@
+package digital.slovensko.autogram.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import digital.slovensko.autogram.core.Responder;
+import digital.slovensko.autogram.core.SignedDocument;
+import digital.slovensko.autogram.core.errors.AutogramException;
+import digital.slovensko.autogram.core.errors.ResponseNetworkErrorException;
+import digital.slovensko.autogram.server.dto.ErrorResponse;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Responds with raw signed document bytes instead of base64 in JSON, used when the client sends
+ * Accept: application/octet-stream. Signer and issuer are sent URL-encoded in headers. Errors are still JSON.
+ */
+public class BinaryServerResponder extends Responder {
+    private final HttpExchange exchange;
+
+    public BinaryServerResponder(HttpExchange exchange) {
+        this.exchange = exchange;
+    }
+
+    public static boolean isAccepted(HttpExchange exchange) {
+        var accept = exchange.getRequestHeaders().getFirst("Accept");
+        return accept != null && accept.contains("application/octet-stream");
+    }
+
+    @Override
+    public void onDocumentSigned(SignedDocument signedDocument) throws AutogramException {
+        var document = signedDocument.getDocument();
+        var signer = signedDocument.getCertificate().getSubject().getPrincipal().toString();
+        var issuer = signedDocument.getCertificate().getIssuer().getPrincipal().toString();
+        var mimeType = document.getMimeType() != null ? document.getMimeType().getMimeTypeString()
+                : "application/octet-stream";
+
+        try {
+            var headers = exchange.getResponseHeaders();
+            headers.add("Content-Type", mimeType);
+            headers.add("X-Autogram-Signed-By", URLEncoder.encode(signer, StandardCharsets.UTF_8));
+            headers.add("X-Autogram-Issued-By", URLEncoder.encode(issuer, StandardCharsets.UTF_8));
+            headers.add("Access-Control-Expose-Headers", "X-Autogram-Signed-By, X-Autogram-Issued-By, Content-Disposition");
+            if (document.getName() != null)
+                headers.add("Content-Disposition", "attachment; filename*=UTF-8''"
+                        + URLEncoder.encode(document.getName(), StandardCharsets.UTF_8).replace("+", "%20"));
+
+            exchange.sendResponseHeaders(200, 0);
+            try (var in = document.openStream(); var body = exchange.getResponseBody()) {
+                in.transferTo(body);
+            }
+        } catch (IOException e) {
+            // the 200 headers may be sent already, then the client only sees the body cut short
+            EndpointUtils.closeIfCommitted(exchange);
+            throw new ResponseNetworkErrorException("Externá aplikácia nečakala na odpoveď", e);
+        } catch (RuntimeException e) {
+            EndpointUtils.closeIfCommitted(exchange);
+            throw e;
+        }
+    }
+
+    @Override
+    public void onDocumentSignFailed(AutogramException error) {
+        EndpointUtils.respondWithError(ErrorResponse.buildFromException(error), exchange);
+    }
+}
@@ -1,17 +1,40 @@
 package digital.slovensko.autogram.server;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.sun.net.httpserver.HttpExchange;
 
+import digital.slovensko.autogram.core.SignedDocument;
 import digital.slovensko.autogram.core.errors.ResponseNetworkErrorException;
 import digital.slovensko.autogram.server.dto.ErrorResponse;
 import digital.slovensko.autogram.server.errors.EmptyBodyException;
+import digital.slovensko.autogram.server.errors.MalformedBodyException;
+import digital.slovensko.autogram.server.errors.TooManyRequestsException;
+
+import eu.europa.esig.dss.model.DSSDocument;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 
 public class EndpointUtils {
     private final static Gson gson = new Gson();
 
     public static void respondWithError(ErrorResponse error, HttpExchange exchange) {
+        if (isResponseCommitted(exchange)) {
+            // the status was already sent, the client only sees the body cut short
+            exchange.close();
+            return;
+        }
+
         try {
             exchange.getResponseHeaders().add("Content-Type", "application/json");
             exchange.sendResponseHeaders(error.getStatusCode(), 0);
@@ -23,10 +46,26 @@ public class EndpointUtils {
         }
     }
 
+    /**
+     * Error response for a request body that failed to parse. A body without Content-Length is charged by the
+     * AdmissionController while it is read, so the parser may have wrapped a rejection, which must stay a 429.
+     */
+    public static ErrorResponse buildMalformedBodyError(Exception e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause())
+            if (cause instanceof TooManyRequestsException tooManyRequests)
+                return ErrorResponse.buildFromException(tooManyRequests);
+
+        return ErrorResponse.buildFromException(new MalformedBodyException(e.getMessage(), e));
+    }
+
     public static void respondWith(Object response, HttpExchange exchange) {
+        respondWith(response, 200, exchange);
+    }
+
+    public static void respondWith(Object response, int statusCode, HttpExchange exchange) {
         try {
             exchange.getResponseHeaders().add("Content-Type", "application/json");
-            exchange.sendResponseHeaders(200, 0);
+            exchange.sendResponseHeaders(statusCode, 0);
             exchange.getResponseBody().write(gson.toJson(response).getBytes());
             exchange.getResponseBody().close();
         } catch (IOException e) {
@@ -34,13 +73,106 @@ public class EndpointUtils {
         }
     }
 
+    public static void respondWithSignedDocument(SignedDocument signedDocument, HttpExchange exchange) {
+        var signer = signedDocument.getCertificate().getSubject().getPrincipal().toString();
+        var issuer = signedDocument.getCertificate().getIssuer().getPrincipal().toString();
+
+        respondWithSignResponse(signedDocument.getDocument(), signer, issuer, exchange);
+    }
+
+    /**
+     * The body is streamed after the 200 headers are sent, so a failure while writing it closes the exchange
+     * instead of responding with an error.
+     */
+    static void respondWithSignResponse(DSSDocument document, String signer, String issuer, HttpExchange exchange) {
+        try {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, 0);
+            try (var body = new BufferedOutputStream(exchange.getResponseBody())) {
+                writeSignResponse(document, signer, issuer, body);
+            }
+        } catch (IOException e) {
+            closeIfCommitted(exchange);
+            throw new ResponseNetworkErrorException("Externá aplikácia nečakala na odpoveď", e);
+        } catch (RuntimeException e) {
+            closeIfCommitted(exchange);
+            throw e;
+        }
+    }
+
+    static void writeSignResponse(SignedDocument signedDocument, OutputStream out) throws IOException {
+        var signer = signedDocument.getCertificate().getSubject().getPrincipal().toString();
+        var issuer = signedDocument.getCertificate().getIssuer().getPrincipal().toString();
+
+        writeSignResponse(signedDocument.getDocument(), signer, issuer, out);
+    }
+
+    /**
+     * @return true once the response headers were sent, after that no other status can be sent
+     */
+    static boolean isResponseCommitted(HttpExchange exchange) {
+        return exchange.getResponseCode() > 0;
+    }
+
+    static void closeIfCommitted(HttpExchange exchange) {
+        if (isResponseCommitted(exchange))
+            exchange.close();
+    }
+
+    /**
+     * Write the same JSON as a serialized SignResponse, but stream the document content through a base64 encoder
+     * instead of building the encoded String first, so memory use does not grow with the document size.
+     */
+    static void writeSignResponse(DSSDocument document, String signer, String issuer, OutputStream out)
+            throws IOException {
+        out.write("{\"content\":\"".getBytes(StandardCharsets.UTF_8));
+
+        // closing the encoder flushes the final base64 block, but must not close the response stream
+        try (var encoder = Base64.getEncoder().wrap(new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        }); var in = document.openStream()) {
+            in.transferTo(encoder);
+        }
+
+        out.write(("\",\"signedBy\":" + gson.toJson(signer) + ",\"issuedby\":" + gson.toJson(issuer) + "}")
+                .getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    /**
+     * Parse JSON request body straight from the exchange stream.
+     *
+     * The body is never materialized as a whole (neither as bytes nor as a String), only the parsed object is kept,
+     * so large base64 documents are held in memory roughly once.
+     */
     public static <T> T loadFromJsonExchange(HttpExchange exchange, Class<T> classOfT) throws IOException {
-        var content = new String(exchange.getRequestBody().readAllBytes());
-        if (content == null || content.isEmpty())
-            throw new EmptyBodyException("Empty body");
-        var ret = gson.fromJson(content, classOfT);
-        if (ret == null)
-            throw new IOException("Failed to parse JSON body");
-        return ret;
+        var reader = new JsonReader(new BufferedReader(
+                new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)));
+        reader.setLenient(true);
+
+        try (reader) {
+            try {
+                reader.peek();
+            } catch (EOFException e) {
+                throw new EmptyBodyException("Empty body");
+            }
+
+            T ret = gson.fromJson(reader, classOfT);
+            if (ret == null)
+                throw new IOException("Failed to parse JSON body");
+
+            if (reader.peek() != JsonToken.END_DOCUMENT)
+                throw new JsonSyntaxException("JSON document was not fully consumed.");
+
+            return ret;
+        }
     }
 }
@@ -11,9 +11,17 @@ import static digital.slovensko.autogram.server.dto.InfoResponse.*;
 import java.io.IOException;
 
 public class InfoEndpoint implements HttpHandler {
+    private final AdmissionController admissionController;
+
+    public InfoEndpoint(AdmissionController admissionController) {
+        this.admissionController = admissionController;
+    }
+
     @Override
     public void handle(HttpExchange exchange) throws IOException {
-        var response = new InfoResponse(Main.getVersionString(), getStatus());
+        var queue = new InfoResponse.Queue(admissionController.getInFlightJobs(), admissionController.getMaxJobs(),
+                admissionController.getInFlightBytes(), admissionController.getMaxBytes());
+        var response = new InfoResponse(Main.getVersionString(), getStatus(), queue);
         var gson = new Gson();
 
         try (exchange) {
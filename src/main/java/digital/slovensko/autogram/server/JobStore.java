@@ -0,0 +1,169 @@
+package digital.slovensko.autogram.server;
+
+import static digital.slovensko.autogram.core.Configuration.getProperty;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import digital.slovensko.autogram.core.DocumentSpill;
+import digital.slovensko.autogram.core.Responder;
+import digital.slovensko.autogram.core.SignedDocument;
+import digital.slovensko.autogram.core.errors.AutogramException;
+import digital.slovensko.autogram.server.errors.JobNotFoundException;
+import digital.slovensko.autogram.server.errors.JobStoreFullException;
+
+/**
+ * Bounded store of asynchronous signing jobs.
+ *
+ * Pending jobs are evicted after pendingTtl, so a job the user never confirms or whose client went away does not hold
+ * a slot of the store forever. Finished jobs are evicted after TTL unless their result is fetched sooner. Eviction is
+ * done lazily on access, there is no cleanup thread. Temporary file of a spilled result is deleted once the result is
+ * fetched or the job is evicted, also when an evicted pending job finishes later.
+ */
+public class JobStore {
+    private final int maxJobs;
+    private final Duration ttl;
+    private final Duration pendingTtl;
+    private final Map<String, Job> jobs = new LinkedHashMap<>();
+
+    public JobStore(int maxJobs, Duration ttl, Duration pendingTtl) {
+        this.maxJobs = maxJobs;
+        this.ttl = ttl;
+        this.pendingTtl = pendingTtl;
+    }
+
+    public static JobStore fromConfiguration() {
+        return new JobStore(Integer.parseInt(getProperty("server.jobs.maxJobs")),
+                Duration.ofSeconds(Long.parseLong(getProperty("server.jobs.ttlSeconds"))),
+                Duration.ofSeconds(Long.parseLong(getProperty("server.jobs.pendingTtlSeconds"))));
+    }
+
+    public synchronized Job create() throws JobStoreFullException {
+        evictExpired();
+        if (jobs.size() >= maxJobs)
+            throw new JobStoreFullException(maxJobs);
+
+        var job = new Job(UUID.randomUUID().toString(), ttl, pendingTtl);
+        jobs.put(job.getId(), job);
+
+        return job;
+    }
+
+    public synchronized Job get(String jobId) throws JobNotFoundException {
+        evictExpired();
+        var job = jobs.get(jobId);
+        if (job == null)
+            throw new JobNotFoundException(jobId);
+
+        return job;
+    }
+
+    public synchronized void remove(String jobId) {
+        jobs.remove(jobId);
+    }
+
+    public synchronized int size() {
+        evictExpired();
+        return jobs.size();
+    }
+
+    private void evictExpired() {
+        var now = Instant.now();
+        var expired = jobs.values().stream().filter(job -> job.isExpired(now)).toList();
+        expired.forEach(job -> {
+            jobs.remove(job.getId());
+            job.discard();
+        });
+    }
+
+    public static class Job {
+        public enum Status {
+            PENDING, SIGNED, FAILED
+        }
+
+        private final String id;
+        private final Duration ttl;
+        private Status status = Status.PENDING;
+        private volatile Instant expiresAt;
+        private SignedDocument signedDocument;
+        private AutogramException error;
+        private boolean isDiscarded = false;
+
+        private Job(String id, Duration ttl, Duration pendingTtl) {
+            this.id = id;
+            this.ttl = ttl;
+            this.expiresAt = Instant.now().plus(pendingTtl);
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public synchronized Status getStatus() {
+            return status;
+        }
+
+        public synchronized void complete(SignedDocument signedDocument) {
+            this.signedDocument = signedDocument;
+            finish(Status.SIGNED);
+            if (isDiscarded)
+                discard(); // evicted while pending, nobody can fetch the result anymore
+        }
+
+        public synchronized void fail(AutogramException error) {
+            this.error = error;
+            finish(Status.FAILED);
+        }
+
+        /**
+         * Wait until the job is finished or timeout elapses, whichever comes first.
+         */
+        public synchronized Status awaitStatus(Duration timeout) throws InterruptedException {
+            var deadline = System.nanoTime() + timeout.toNanos();
+            while (status == Status.PENDING) {
+                var remaining = deadline - System.nanoTime();
+                if (remaining <= 0)
+                    break;
+
+                wait(Math.max(1, remaining / 1_000_000));
+            }
+
+            return status;
+        }
+
+        /**
+         * Replay the result of a finished job to responder, e.g. ServerResponder of the request fetching it.
+         */
+        public synchronized void respondTo(Responder responder) {
+            if (status == Status.SIGNED)
+                responder.onDocumentSigned(signedDocument);
+            else if (status == Status.FAILED)
+                responder.onDocumentSignFailed(error);
+            else
+                throw new IllegalStateException("Job " + id + " is not finished");
+        }
+
+        /**
+         * Delete the spilled signed document, the result cannot be replayed afterwards. A pending job deletes it as
+         * soon as it finishes.
+         */
+        public synchronized void discard() {
+            isDiscarded = true;
+            if (signedDocument != null)
+                DocumentSpill.discard(signedDocument.getDocument());
+        }
+
+        private void finish(Status status) {
+            this.status = status;
+            this.expiresAt = Instant.now().plus(ttl);
+            notifyAll();
+        }
+
+        private boolean isExpired(Instant now) {
+            return now.isAfter(expiresAt);
+        }
+    }
+}
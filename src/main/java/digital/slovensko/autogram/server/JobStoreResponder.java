@@ -0,0 +1,31 @@
+package digital.slovensko.autogram.server;
+
+import digital.slovensko.autogram.core.Responder;
+import digital.slovensko.autogram.core.SignedDocument;
+import digital.slovensko.autogram.core.errors.AutogramException;
+
+public class JobStoreResponder extends Responder {
+    private final JobStore.Job job;
+
+    public JobStoreResponder(JobStore.Job job) {
+        this.job = job;
+    }
+
+    @Override
+    public void onDocumentSigned(SignedDocument signedDocument) {
+        job.complete(signedDocument);
+    }
+
+    @Override
+    public void onDocumentSignFailed(AutogramException error) {
+        job.fail(error);
+    }
+
+    /**
+     * The result is kept in the job until it is fetched or expires.
+     */
+    @Override
+    public boolean keepsSignedDocument() {
+        return true;
+    }
+}
@@ -0,0 +1,160 @@
+package digital.slovensko.autogram.server;
+
+import com.google.gson.JsonSyntaxException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import digital.slovensko.autogram.core.Autogram;
+import digital.slovensko.autogram.core.errors.AutogramException;
+import digital.slovensko.autogram.server.dto.ErrorResponse;
+import digital.slovensko.autogram.server.dto.JobResponseBody;
+import digital.slovensko.autogram.server.errors.EndpointNotFoundException;
+import digital.slovensko.autogram.server.errors.MalformedBodyException;
+import digital.slovensko.autogram.server.errors.MethodNotAllowedException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Asynchronous variant of /sign.
+ *
+ * POST /jobs - submit the same body as to /sign, job id is returned immediately
+ * GET /jobs/{id}?timeout=30 - job status, optionally wait up to timeout seconds for the job to finish
+ * GET /jobs/{id}/result?timeout=30 - same response as /sign would return, the result can be fetched only once
+ *
+ * A waiting request holds its server thread, so at most maxWaitingRequests requests wait at once. Further requests
+ * get the current status right away and the client polls again.
+ */
+public class JobsEndpoint implements HttpHandler {
+    private static final long MAX_TIMEOUT_SECONDS = 60;
+
+    private final Autogram autogram;
+    private final JobStore jobStore;
+    private final AdmissionController admissionController;
+    private final Semaphore waitingRequests;
+
+    public JobsEndpoint(Autogram autogram, JobStore jobStore, AdmissionController admissionController,
+            int maxWaitingRequests) {
+        this.autogram = autogram;
+        this.jobStore = jobStore;
+        this.admissionController = admissionController;
+        this.waitingRequests = new Semaphore(maxWaitingRequests);
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        var path = exchange.getRequestURI().getPath().replaceFirst("^/jobs/?", "").split("/");
+
+        try {
+            if (path.length == 1 && path[0].isEmpty()) {
+                assertMethod(exchange, "POST");
+                submitJob(exchange);
+            } else if (path.length == 1) {
+                assertMethod(exchange, "GET");
+                respondWithStatus(exchange, path[0]);
+            } else if (path.length == 2 && path[1].equals("result")) {
+                assertMethod(exchange, "GET");
+                respondWithResult(exchange, path[0]);
+            } else {
+                throw new EndpointNotFoundException(exchange.getRequestURI().getPath());
+            }
+
+        } catch (JsonSyntaxException | IOException e) {
+            var response = EndpointUtils.buildMalformedBodyError(e);
+            EndpointUtils.respondWithError(response, exchange);
+
+        } catch (AutogramException e) {
+            EndpointUtils.respondWithError(ErrorResponse.buildFromException(e), exchange);
+
+        } catch (Exception e) {
+            EndpointUtils.respondWithError(ErrorResponse.buildFromException(e), exchange);
+        }
+    }
+
+    private void submitJob(HttpExchange exchange) throws IOException {
+        var permit = admissionController.acquire(exchange);
+        JobStore.Job job = null;
+
+        try {
+            var body = SignEndpoint.loadSignRequestBody(exchange);
+            job = jobStore.create();
+            SignEndpoint.submit(autogram, body, new AdmittedResponder(new JobStoreResponder(job), permit));
+        } catch (Exception e) {
+            permit.release();
+            if (job != null)
+                jobStore.remove(job.getId());
+
+            throw e;
+        }
+
+        respondWithJob(exchange, 202, job.getId(), job.getStatus());
+    }
+
+    private void respondWithStatus(HttpExchange exchange, String jobId) throws IOException, InterruptedException {
+        var job = jobStore.get(jobId);
+        respondWithJob(exchange, 200, jobId, awaitStatus(exchange, job));
+    }
+
+    private void respondWithResult(HttpExchange exchange, String jobId) throws IOException, InterruptedException {
+        var job = jobStore.get(jobId);
+        var status = awaitStatus(exchange, job);
+        if (status == JobStore.Job.Status.PENDING) {
+            respondWithJob(exchange, 202, jobId, status);
+            return;
+        }
+
+        synchronized (job) {
+            // another request might have fetched the result while we were waiting
+            jobStore.get(jobId);
+            jobStore.remove(jobId);
+        }
+
+        try {
+            job.respondTo(SignEndpoint.createResponder(exchange));
+        } finally {
+            job.discard();
+        }
+    }
+
+    private JobStore.Job.Status awaitStatus(HttpExchange exchange, JobStore.Job job)
+            throws MalformedBodyException, InterruptedException {
+        var timeout = getTimeout(exchange);
+        if (timeout.isZero() || !waitingRequests.tryAcquire())
+            return job.getStatus();
+
+        try {
+            return job.awaitStatus(timeout);
+        } finally {
+            waitingRequests.release();
+        }
+    }
+
+    private static void respondWithJob(HttpExchange exchange, int statusCode, String jobId, JobStore.Job.Status status) {
+        EndpointUtils.respondWith(new JobResponseBody(jobId, status.name()), statusCode, exchange);
+    }
+
+    private static void assertMethod(HttpExchange exchange, String method) throws MethodNotAllowedException {
+        if (!exchange.getRequestMethod().equalsIgnoreCase(method))
+            throw new MethodNotAllowedException(exchange.getRequestMethod(), exchange.getRequestURI().getPath());
+    }
+
+    private static Duration getTimeout(HttpExchange exchange) throws MalformedBodyException {
+        var query = exchange.getRequestURI().getQuery();
+        if (query == null)
+            return Duration.ZERO;
+
+        for (var parameter : query.split("&")) {
+            if (!parameter.startsWith("timeout="))
+                continue;
+
+            try {
+                var seconds = Long.parseLong(parameter.substring("timeout=".length()));
+                return Duration.ofSeconds(Math.max(0, Math.min(seconds, MAX_TIMEOUT_SECONDS)));
+            } catch (NumberFormatException e) {
+                throw new MalformedBodyException("Invalid timeout", "Timeout must be a number of seconds");
+            }
+        }
+
+        return Duration.ZERO;
+    }
+}
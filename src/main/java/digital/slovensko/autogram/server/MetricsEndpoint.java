@@ -0,0 +1,72 @@
+package digital.slovensko.autogram.server;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import digital.slovensko.autogram.core.SignatureValidator;
+import digital.slovensko.autogram.core.metrics.Metrics;
+
+/**
+ * Metrics in Prometheus text format: registered counters and histograms plus gauges read at scrape time.
+ */
+public class MetricsEndpoint implements HttpHandler {
+    private final AdmissionController admissionController;
+
+    public MetricsEndpoint(AdmissionController admissionController) {
+        this.admissionController = admissionController;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        var out = new StringBuilder();
+        Metrics.writeTo(out);
+        writeGauges(out);
+
+        try (exchange) {
+            var body = out.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    private void writeGauges(StringBuilder out) {
+        writeGauge(out, "autogram_trusted_lists_loaded", "Whether trusted lists are loaded (1) or not (0)",
+                SignatureValidator.getInstance().areTLsLoaded() ? 1 : 0);
+        writeGauge(out, "autogram_admission_in_flight_jobs", "Sign requests being processed",
+                admissionController.getInFlightJobs());
+        writeGauge(out, "autogram_admission_in_flight_bytes", "Size of sign requests being processed",
+                admissionController.getInFlightBytes());
+
+        var memory = ManagementFactory.getMemoryMXBean();
+        writeHeader(out, "jvm_memory_bytes_used", "Used JVM memory", "gauge");
+        out.append("jvm_memory_bytes_used{area=\"heap\"} ").append(memory.getHeapMemoryUsage().getUsed()).append('\n');
+        out.append("jvm_memory_bytes_used{area=\"nonheap\"} ").append(memory.getNonHeapMemoryUsage().getUsed()).append('\n');
+        writeGauge(out, "jvm_memory_heap_bytes_max", "Max JVM heap", memory.getHeapMemoryUsage().getMax());
+
+        var collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        writeHeader(out, "jvm_gc_collections_total", "Number of garbage collections", "counter");
+        for (var gc : collectors)
+            out.append("jvm_gc_collections_total").append(Metrics.formatLabels("gc", gc.getName())).append(' ')
+                    .append(gc.getCollectionCount()).append('\n');
+
+        writeHeader(out, "jvm_gc_collection_seconds_total", "Time spent in garbage collections", "counter");
+        for (var gc : collectors)
+            out.append("jvm_gc_collection_seconds_total").append(Metrics.formatLabels("gc", gc.getName())).append(' ')
+                    .append(gc.getCollectionTime() / 1000.0).append('\n');
+    }
+
+    private static void writeGauge(StringBuilder out, String name, String help, long value) {
+        writeHeader(out, name, help, "gauge");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void writeHeader(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+}
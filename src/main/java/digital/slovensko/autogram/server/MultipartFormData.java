@@ -0,0 +1,177 @@
+package digital.slovensko.autogram.server;
+
+import digital.slovensko.autogram.core.DocumentSpill;
+import digital.slovensko.autogram.server.errors.MalformedBodyException;
+import eu.europa.esig.dss.model.DSSDocument;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal streaming multipart/form-data parser (RFC 7578).
+ *
+ * Parts are read one after another straight from the request stream, the body is never held as a whole. Content of
+ * each part is written straight into its document, a large part goes to a temporary file, see {@link DocumentSpill}.
+ */
+public class MultipartFormData {
+    private final Map<String, Part> parts;
+
+    private MultipartFormData(Map<String, Part> parts) {
+        this.parts = parts;
+    }
+
+    public record Part(String name, String filename, String contentType, DSSDocument content) {
+        public String getContentAsString() throws IOException {
+            try (var in = content.openStream()) {
+                return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    public static boolean isMultipart(String contentType) {
+        return contentType != null && contentType.toLowerCase().startsWith("multipart/form-data");
+    }
+
+    public Part get(String name) {
+        return parts.get(name);
+    }
+
+    public static MultipartFormData parse(InputStream body, String contentType) throws IOException {
+        var boundary = getBoundary(contentType);
+        var delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        var in = new BufferedInputStream(body);
+        var parts = new HashMap<String, Part>();
+
+        // the first delimiter is not preceded by CRLF, skip preamble
+        if (!readUntilDelimiter(in, delimiter, 2, OutputStream.nullOutputStream()))
+            throw new MalformedBodyException("Multipart boundary not found", "Multipart body does not contain boundary " + boundary);
+
+        try {
+            readParts(in, delimiter, parts);
+        } catch (IOException | RuntimeException e) {
+            parts.values().forEach((part) -> DocumentSpill.discard(part.content()));
+            throw e;
+        }
+
+        return new MultipartFormData(parts);
+    }
+
+    private static void readParts(InputStream in, byte[] delimiter, Map<String, Part> parts) throws IOException {
+        while (true) {
+            var a = in.read();
+            var b = in.read();
+            if (a == '-' && b == '-')
+                break;
+
+            if (a != '\r' || b != '\n')
+                throw new MalformedBodyException("Malformed multipart body", "Unexpected data after multipart boundary");
+
+            var headers = readHeaders(in);
+            var disposition = headers.get("content-disposition");
+            var name = getHeaderParameter(disposition, "name");
+            if (name == null)
+                throw new MalformedBodyException("Malformed multipart body", "Multipart part without name");
+
+            var filename = getHeaderParameter(disposition, "filename");
+            var content = DocumentSpill.newOutputStream();
+            try {
+                if (!readUntilDelimiter(in, delimiter, 0, content))
+                    throw new MalformedBodyException("Malformed multipart body", "Multipart body is not terminated");
+            } catch (IOException | RuntimeException e) {
+                content.discard();
+                throw e;
+            }
+
+            var previous = parts.put(name, new Part(name, filename, headers.get("content-type"),
+                    content.toDocument(filename)));
+            if (previous != null)
+                DocumentSpill.discard(previous.content());
+        }
+    }
+
+    private static String getBoundary(String contentType) throws MalformedBodyException {
+        var boundary = getHeaderParameter(contentType, "boundary");
+        if (boundary == null || boundary.isEmpty())
+            throw new MalformedBodyException("Multipart boundary missing", "Content-Type header has no boundary parameter");
+
+        return boundary;
+    }
+
+    /**
+     * Copy bytes to out until the delimiter is found. The delimiter starts with CR which does not occur anywhere else
+     * in it, so on mismatch it is enough to restart matching from the current byte.
+     */
+    private static boolean readUntilDelimiter(InputStream in, byte[] delimiter, int alreadyMatched, OutputStream out)
+            throws IOException {
+        var matched = alreadyMatched;
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == delimiter[matched]) {
+                if (++matched == delimiter.length)
+                    return true;
+
+                continue;
+            }
+
+            out.write(delimiter, 0, matched);
+            if (c == delimiter[0]) {
+                matched = 1;
+            } else {
+                matched = 0;
+                out.write(c);
+            }
+        }
+
+        return false;
+    }
+
+    private static Map<String, String> readHeaders(InputStream in) throws IOException {
+        var headers = new HashMap<String, String>();
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            var colon = line.indexOf(':');
+            if (colon > 0)
+                headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+        }
+
+        return headers;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        var line = new ByteArrayOutputStream();
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c == -1)
+                throw new MalformedBodyException("Malformed multipart body", "Multipart headers are not terminated");
+
+            if (c != '\r')
+                line.write(c);
+        }
+
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    private static String getHeaderParameter(String header, String parameter) {
+        if (header == null)
+            return null;
+
+        for (var token : header.split(";")) {
+            var pair = token.trim().split("=", 2);
+            if (pair.length == 2 && pair[0].trim().equalsIgnoreCase(parameter)) {
+                var value = pair[1].trim();
+                if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\""))
+                    value = value.substring(1, value.length() - 1);
+
+                return value;
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,135 @@
+package digital.slovensko.autogram.server;
+
+import com.google.gson.Gson;
+import digital.slovensko.autogram.core.Responder;
+import digital.slovensko.autogram.core.SignedDocument;
+import digital.slovensko.autogram.core.errors.AutogramException;
+import digital.slovensko.autogram.core.errors.ResponseNetworkErrorException;
+import digital.slovensko.autogram.server.dto.ErrorResponse;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Newline-delimited JSON response of /batch/sign, one record per document written as soon as it is signed:
+ *
+ * {"index":0,"status":"SIGNED","result":{"content":"...","signedBy":"...","issuedby":"..."}}
+ * {"index":1,"status":"FAILED","error":{"code":"...","message":"...","details":"..."}}
+ *
+ * Records may arrive out of order. The response is closed after the last document is reported, or after the first
+ * failed write (e.g. client disconnected), in which case all later records are dropped.
+ */
+public class NdjsonBatchResponse {
+    private final static Gson gson = new Gson();
+
+    private final OutputStream out;
+    private final boolean[] reported;
+    private final Runnable onCompleted;
+    private int remaining;
+    private boolean broken = false;
+
+    public NdjsonBatchResponse(OutputStream out, int numberOfDocuments) {
+        this(out, numberOfDocuments, () -> {});
+    }
+
+    public NdjsonBatchResponse(OutputStream out, int numberOfDocuments, Runnable onCompleted) {
+        this.out = new BufferedOutputStream(out);
+        this.reported = new boolean[numberOfDocuments];
+        this.onCompleted = onCompleted;
+        this.remaining = numberOfDocuments;
+    }
+
+    /**
+     * @return true after a write failed, nothing more will be written
+     */
+    public synchronized boolean isBroken() {
+        return broken;
+    }
+
+    public Responder forDocument(int index) {
+        return new Responder() {
+            @Override
+            public void onDocumentSigned(SignedDocument signedDocument) {
+                writeSigned(index, signedDocument);
+            }
+
+            @Override
+            public void onDocumentSignFailed(AutogramException error) {
+                writeFailed(index, error);
+            }
+        };
+    }
+
+    /**
+     * The signed document is streamed into the record. If that fails once the record has started, the half-written
+     * record cannot be finished, so the stream ends there and the document does not get a second (FAILED) record.
+     */
+    public synchronized void writeSigned(int index, SignedDocument signedDocument) {
+        if (broken || reported[index])
+            return;
+
+        try {
+            out.write(("{\"index\":" + index + ",\"status\":\"SIGNED\",\"result\":").getBytes(StandardCharsets.UTF_8));
+            EndpointUtils.writeSignResponse(signedDocument, out);
+            out.write("}\n".getBytes(StandardCharsets.UTF_8));
+            onReported(index);
+        } catch (IOException e) {
+            onBroken();
+            throw new ResponseNetworkErrorException("Externá aplikácia nečakala na odpoveď", e);
+        } catch (RuntimeException e) {
+            onBroken();
+            throw e;
+        }
+    }
+
+    /**
+     * Failure of a document that was already reported (e.g. response network error after writing it) is ignored,
+     * every document gets exactly one record.
+     */
+    public synchronized void writeFailed(int index, Exception error) {
+        if (broken || reported[index])
+            return;
+
+        try {
+            var body = ErrorResponse.buildFromException(error).getBody();
+            out.write(("{\"index\":" + index + ",\"status\":\"FAILED\",\"error\":" + gson.toJson(body) + "}\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            onReported(index);
+        } catch (IOException e) {
+            onBroken();
+            throw new ResponseNetworkErrorException("Externá aplikácia nečakala na odpoveď", e);
+        }
+    }
+
+    private void onReported(int index) throws IOException {
+        reported[index] = true;
+        remaining--;
+
+        if (remaining > 0) {
+            out.flush();
+            return;
+        }
+
+        try {
+            out.close();
+        } finally {
+            onCompleted.run();
+        }
+    }
+
+    private void onBroken() {
+        if (remaining == 0)
+            return; // failed while closing after the last record, onCompleted already ran
+
+        broken = true;
+        try {
+            out.close();
+        } catch (IOException ignored) {
+            // the connection is gone already
+        } finally {
+            onCompleted.run();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package digital.slovensko.autogram.server;
+
+import static digital.slovensko.autogram.core.Configuration.getProperty;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How HTTP server threads are created. Requests waiting for the user to confirm signing must not starve
+ * other requests like /info, so the server gets its own executor, separate from the trusted list one.
+ *
+ * FIXED - fixed pool of server.executor.threads threads (original behaviour)
+ * ELASTIC - grows up to server.executor.maxThreads threads, idle threads are released
+ * VIRTUAL - thread per request on virtual threads when running on Java 21+, ELASTIC otherwise
+ */
+public enum ServerExecutorMode {
+    FIXED, ELASTIC, VIRTUAL;
+
+    public static ServerExecutorMode fromConfiguration() {
+        return valueOf(getProperty("server.executor").toUpperCase());
+    }
+
+    public ExecutorService createExecutor() {
+        return switch (this) {
+            case FIXED -> Executors.newFixedThreadPool(Integer.parseInt(getProperty("server.executor.threads")));
+            case ELASTIC -> createElasticExecutor(Integer.parseInt(getProperty("server.executor.maxThreads")));
+            case VIRTUAL -> createVirtualThreadExecutor();
+        };
+    }
+
+    private static ExecutorService createElasticExecutor(int maxThreads) {
+        var executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
+    }
+
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            // built for Java 17, so look the factory up at runtime
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return ELASTIC.createExecutor();
+        }
+    }
+}
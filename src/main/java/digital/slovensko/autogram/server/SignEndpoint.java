@@ -1,43 +1,45 @@
 package digital.slovensko.autogram.server;
 
+import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import digital.slovensko.autogram.core.Autogram;
+import digital.slovensko.autogram.core.Responder;
 import digital.slovensko.autogram.core.ResponderInBatch;
 import digital.slovensko.autogram.core.SigningJob;
 import digital.slovensko.autogram.core.errors.AutogramException;
 import digital.slovensko.autogram.server.dto.ErrorResponse;
+import digital.slovensko.autogram.server.dto.ServerSigningParameters;
 import digital.slovensko.autogram.server.dto.SignRequestBody;
-import digital.slovensko.autogram.server.errors.MalformedBodyException;
+import digital.slovensko.autogram.server.errors.RequestValidationException;
 
 import java.io.IOException;
 
 public class SignEndpoint implements HttpHandler {
+    private final static Gson gson = new Gson();
     private final Autogram autogram;
+    private final AdmissionController admissionController;
 
-    public SignEndpoint(Autogram autogram) {
+    public SignEndpoint(Autogram autogram, AdmissionController admissionController) {
         this.autogram = autogram;
+        this.admissionController = admissionController;
     }
 
     @Override
     public void handle(HttpExchange exchange) throws IOException {
         try {
-            var body = EndpointUtils.loadFromJsonExchange(exchange, SignRequestBody.class);
-            body.validateDocument();
-            body.validateSigningParameters();
-
-            var responder = body.getBatchId() == null ? new ServerResponder(exchange)
-                    : new ResponderInBatch(new ServerResponder(exchange), autogram.getBatch(body.getBatchId()));
-            var job = SigningJob.buildFromRequest(body.getDocument(), body.getParameters(autogram.getTspSource()), responder);
-
-            if (body.getBatchId() != null)
-                autogram.batchSign(job, body.getBatchId());
-            else
-                autogram.sign(job);
+            var permit = admissionController.acquire(exchange);
+            try {
+                var body = loadSignRequestBody(exchange);
+                submit(autogram, body, new AdmittedResponder(createResponder(exchange), permit));
+            } catch (Exception e) {
+                permit.release();
+                throw e;
+            }
 
         } catch (JsonSyntaxException | IOException e) {
-            var response = ErrorResponse.buildFromException(new MalformedBodyException(e.getMessage(), e));
+            var response = EndpointUtils.buildMalformedBodyError(e);
             EndpointUtils.respondWithError(response, exchange);
 
         } catch (AutogramException e) {
@@ -47,4 +49,65 @@ public class SignEndpoint implements HttpHandler {
             EndpointUtils.respondWithError(ErrorResponse.buildFromException(e), exchange);
         }
     }
+
+    static Responder createResponder(HttpExchange exchange) {
+        return BinaryServerResponder.isAccepted(exchange) ? new BinaryServerResponder(exchange)
+                : new ServerResponder(exchange);
+    }
+
+    /**
+     * Load and validate sign request sent either as JSON or as multipart/form-data.
+     */
+    static SignRequestBody loadSignRequestBody(HttpExchange exchange) throws IOException {
+        var contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        var body = MultipartFormData.isMultipart(contentType) ? loadFromMultipartExchange(exchange, contentType)
+                : EndpointUtils.loadFromJsonExchange(exchange, SignRequestBody.class);
+        body.validateDocument();
+        body.validateSigningParameters();
+
+        return body;
+    }
+
+    static void submit(Autogram autogram, SignRequestBody body, Responder responder) {
+        if (body.getBatchId() != null)
+            responder = new ResponderInBatch(responder, autogram.getBatch(body.getBatchId()));
+
+        var job = SigningJob.buildFromRequest(body.getDocument(), body.getAdditionalDocuments(),
+                body.getParameters(autogram.getTspSource()), responder);
+
+        if (body.getBatchId() != null)
+            autogram.batchSign(job, body.getBatchId());
+        else
+            autogram.sign(job);
+    }
+
+    private record MultipartMetadata(ServerSigningParameters parameters, String payloadMimeType, String batchId) {
+    }
+
+    /**
+     * Load request sent as multipart/form-data: "parameters" part has the JSON body without the document
+     * and "document" part has raw document bytes, so no base64 encoding is needed on the wire.
+     * If payloadMimeType is missing, Content-Type of the document part is used.
+     */
+    private static SignRequestBody loadFromMultipartExchange(HttpExchange exchange, String contentType)
+            throws IOException, RequestValidationException {
+        var form = MultipartFormData.parse(exchange.getRequestBody(), contentType);
+        var parametersPart = form.get("parameters");
+        var documentPart = form.get("document");
+        if (parametersPart == null)
+            throw new RequestValidationException("Parameters part is required", "");
+
+        if (documentPart == null)
+            throw new RequestValidationException("Document part is required", "");
+
+        var metadata = gson.fromJson(parametersPart.getContentAsString(), MultipartMetadata.class);
+        if (metadata == null)
+            throw new RequestValidationException("Parameters part is empty", "");
+
+        var payloadMimeType = metadata.payloadMimeType() != null ? metadata.payloadMimeType()
+                : documentPart.contentType();
+
+        return new SignRequestBody(documentPart.content(), documentPart.filename(), metadata.parameters(),
+                payloadMimeType, metadata.batchId());
+    }
 }
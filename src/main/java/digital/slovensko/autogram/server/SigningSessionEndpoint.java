@@ -0,0 +1,141 @@
+package digital.slovensko.autogram.server;
+
+import com.google.gson.JsonSyntaxException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import digital.slovensko.autogram.core.Autogram;
+import digital.slovensko.autogram.core.Responder;
+import digital.slovensko.autogram.core.SignedDocument;
+import digital.slovensko.autogram.core.SigningJob;
+import digital.slovensko.autogram.core.errors.AutogramException;
+import digital.slovensko.autogram.server.dto.ErrorResponse;
+import digital.slovensko.autogram.server.dto.SignCompleteRequestBody;
+import digital.slovensko.autogram.server.dto.SignCompleteResponseBody;
+import digital.slovensko.autogram.server.dto.SignPrepareResponseBody;
+import digital.slovensko.autogram.server.errors.MalformedBodyException;
+import digital.slovensko.autogram.server.errors.RequestValidationException;
+import eu.europa.esig.dss.model.ToBeSigned;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Two-phase signing, the client builds the signed document itself with DSS.
+ *
+ * POST /sign/prepare - same body as /sign, the user confirms the document and picks the key as usual, but the token
+ * is not used yet. Data to sign, signing time, certificates and a session token are returned.
+ * POST /sign/complete - data to sign and the session token, the signature value made by the token is returned.
+ */
+public class SigningSessionEndpoint implements HttpHandler {
+    private final Autogram autogram;
+    private final AdmissionController admissionController;
+    private final SigningSessionTokens tokens;
+
+    public SigningSessionEndpoint(Autogram autogram, AdmissionController admissionController,
+            SigningSessionTokens tokens) {
+        this.autogram = autogram;
+        this.admissionController = admissionController;
+        this.tokens = tokens;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        var path = exchange.getRequestURI().getPath();
+
+        try {
+            if (!exchange.getRequestMethod().equalsIgnoreCase("POST")) {
+                exchange.sendResponseHeaders(405, -1);
+                exchange.close();
+            } else if (path.equals("/sign/prepare")) {
+                prepare(exchange);
+            } else if (path.equals("/sign/complete")) {
+                complete(exchange);
+            } else {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+            }
+
+        } catch (JsonSyntaxException | IOException e) {
+            var response = ErrorResponse.buildFromException(new MalformedBodyException(e.getMessage(), e));
+            EndpointUtils.respondWithError(response, exchange);
+
+        } catch (AutogramException e) {
+            EndpointUtils.respondWithError(ErrorResponse.buildFromException(e), exchange);
+
+        } catch (Exception e) {
+            EndpointUtils.respondWithError(ErrorResponse.buildFromException(e), exchange);
+        }
+    }
+
+    private void prepare(HttpExchange exchange) throws IOException {
+        var permit = admissionController.acquire(exchange);
+        try {
+            var body = SignEndpoint.loadSignRequestBody(exchange);
+            body.validateForPreparation();
+
+            var responder = new PrepareResponder(exchange);
+            var job = SigningJob.buildForPreparation(body.getDocument(), body.getParameters(autogram.getTspSource()),
+                    (prepared) -> {
+                        try {
+                            responder.onDataToSignPrepared(prepared);
+                        } finally {
+                            permit.release();
+                        }
+                    }, new AdmittedResponder(responder, permit));
+            autogram.sign(job);
+        } catch (Exception e) {
+            permit.release();
+            throw e;
+        }
+    }
+
+    private void complete(HttpExchange exchange) throws IOException {
+        var body = EndpointUtils.loadFromJsonExchange(exchange, SignCompleteRequestBody.class);
+        if (body == null)
+            throw new RequestValidationException("Request body is required", "");
+
+        var dataToSign = body.getDataToSignBytes();
+        var session = tokens.verify(body.sessionToken(), dataToSign);
+
+        var toBeSigned = new ToBeSigned();
+        toBeSigned.setBytes(dataToSign);
+        autogram.signPreparedData(toBeSigned, session.digestAlgorithm(), session.getCertificate(),
+                (signatureValue) -> EndpointUtils.respondWith(new SignCompleteResponseBody(
+                        Base64.getEncoder().encodeToString(signatureValue.getValue()),
+                        signatureValue.getAlgorithm().name()), exchange),
+                (error) -> EndpointUtils.respondWithError(ErrorResponse.buildFromException(error), exchange));
+    }
+
+    private class PrepareResponder extends Responder {
+        private final HttpExchange exchange;
+
+        PrepareResponder(HttpExchange exchange) {
+            this.exchange = exchange;
+        }
+
+        void onDataToSignPrepared(SigningJob.PreparedSignature prepared) {
+            var encoder = Base64.getEncoder();
+            var key = prepared.getKey();
+
+            EndpointUtils.respondWith(new SignPrepareResponseBody(
+                    encoder.encodeToString(prepared.getDataToSign().getBytes()),
+                    tokens.create(prepared),
+                    prepared.getSigningDate().toInstant().toString(),
+                    prepared.getJob().getParameters().getDigestAlgorithm().name(),
+                    encoder.encodeToString(key.getCertificate().getEncoded()),
+                    Arrays.stream(key.getCertificateChain()).map((certificate) -> encoder.encodeToString(certificate.getEncoded())).toList()),
+                    exchange);
+        }
+
+        @Override
+        public void onDocumentSigned(SignedDocument signedDocument) {
+            throw new IllegalStateException("Document prepared for two-phase signing was signed");
+        }
+
+        @Override
+        public void onDocumentSignFailed(AutogramException error) {
+            EndpointUtils.respondWithError(ErrorResponse.buildFromException(error), exchange);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package digital.slovensko.autogram.server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import digital.slovensko.autogram.core.SigningJob;
+import digital.slovensko.autogram.server.errors.RequestValidationException;
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import eu.europa.esig.dss.model.x509.CertificateToken;
+import eu.europa.esig.dss.spi.DSSUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+
+import static digital.slovensko.autogram.core.Configuration.getProperty;
+
+/**
+ * Session tokens of two-phase signing. The token carries everything the second phase needs and is authenticated
+ * with a key generated at startup, so Autogram keeps no state between the phases. Tokens are not valid after
+ * a restart.
+ *
+ * token = base64url(session JSON) "." base64url(HMAC-SHA256 of the first part)
+ */
+public class SigningSessionTokens {
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final Gson gson = new Gson();
+
+    private final SecretKeySpec key;
+    private final Duration ttl;
+
+    public record Session(DigestAlgorithm digestAlgorithm, long signingTime, String certificate,
+            String dataToSignDigest, long expiresAt) {
+
+        public CertificateToken getCertificate() {
+            return DSSUtils.loadCertificate(Base64.getDecoder().decode(certificate));
+        }
+    }
+
+    public SigningSessionTokens(Duration ttl) {
+        var secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.key = new SecretKeySpec(secret, MAC_ALGORITHM);
+        this.ttl = ttl;
+    }
+
+    public static SigningSessionTokens fromConfiguration() {
+        return new SigningSessionTokens(Duration.ofSeconds(Long.parseLong(getProperty("server.signingSession.ttlSeconds"))));
+    }
+
+    public String create(SigningJob.PreparedSignature prepared) {
+        var session = new Session(prepared.getJob().getParameters().getDigestAlgorithm(),
+                prepared.getSigningDate().getTime(),
+                Base64.getEncoder().encodeToString(prepared.getKey().getCertificate().getEncoded()),
+                digest(prepared.getDataToSign().getBytes()), System.currentTimeMillis() + ttl.toMillis());
+
+        var payload = encode(gson.toJson(session).getBytes(StandardCharsets.UTF_8));
+        return payload + "." + encode(mac(payload));
+    }
+
+    /**
+     * @throws RequestValidationException if the token was not issued by this instance, has expired or was issued for
+     *                                    other data to sign
+     */
+    public Session verify(String token, byte[] dataToSign) throws RequestValidationException {
+        var parts = token.split("\\.");
+        if (parts.length != 2 || !MessageDigest.isEqual(mac(parts[0]), decode(parts[1])))
+            throw new RequestValidationException("Invalid session token",
+                    "Session token was not issued by this Autogram instance");
+
+        Session session;
+        try {
+            session = gson.fromJson(new String(decode(parts[0]), StandardCharsets.UTF_8), Session.class);
+        } catch (JsonParseException e) {
+            throw new RequestValidationException("Invalid session token", e.getMessage());
+        }
+
+        if (session.expiresAt() < System.currentTimeMillis())
+            throw new RequestValidationException("Session token expired", "Prepare the document for signing again");
+
+        if (!session.dataToSignDigest().equals(digest(dataToSign)))
+            throw new RequestValidationException("DataToSign and SessionToken mismatch",
+                    "Data to sign must be the same as returned with the session token");
+
+        return session;
+    }
+
+    private byte[] mac(String payload) {
+        try {
+            var mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String digest(byte[] data) {
+        try {
+            return encode(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String encode(byte[] data) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(data);
+    }
+
+    private static byte[] decode(String data) throws RequestValidationException {
+        try {
+            return Base64.getUrlDecoder().decode(data);
+        } catch (IllegalArgumentException e) {
+            throw new RequestValidationException("Invalid session token", "Session token is not base64url encoded");
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package digital.slovensko.autogram.server.dto;
+
+import java.util.List;
+
+public record BatchSignRequestBody(String batchId, List<SignRequestBody> documents) {}
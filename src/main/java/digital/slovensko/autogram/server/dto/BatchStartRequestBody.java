@@ -4,13 +4,32 @@ import digital.slovensko.autogram.server.errors.RequestValidationException;
 
 public class BatchStartRequestBody {
     private final Integer totalNumberOfDocuments;
+    private final Boolean openEnded;
 
     public BatchStartRequestBody(int totalNumberOfDocuments) {
         this.totalNumberOfDocuments = totalNumberOfDocuments;
+        this.openEnded = false;
+    }
 
+    public BatchStartRequestBody(Integer totalNumberOfDocuments, Boolean openEnded) {
+        this.totalNumberOfDocuments = totalNumberOfDocuments;
+        this.openEnded = openEnded;
     }
 
-    public int getTotalNumberOfDocuments() {
+    public boolean isOpenEnded() {
+        return openEnded != null && openEnded;
+    }
+
+    /**
+     * @return declared number of documents, null for an open-ended batch
+     */
+    public Integer getTotalNumberOfDocuments() {
+        if (isOpenEnded()) {
+            if (totalNumberOfDocuments != null)
+                throw new RequestValidationException("\"totalNumberOfDocuments\" must not be set for an open-ended batch", "");
+            return null;
+        }
+
         if (totalNumberOfDocuments == null)
             throw new RequestValidationException("\"totalNumberOfDocuments\" is required", "");
         return totalNumberOfDocuments;
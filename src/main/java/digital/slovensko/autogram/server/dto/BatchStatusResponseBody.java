@@ -0,0 +1,17 @@
+package digital.slovensko.autogram.server.dto;
+
+import digital.slovensko.autogram.core.Batch;
+
+public record BatchStatusResponseBody(String batchId, String state, boolean openEnded,
+        Integer totalNumberOfDocuments, int addedDocuments,
+        int successfulDocuments, int failedDocuments, Long latencyP50Millis, Long latencyP95Millis,
+        Double throughputPerSecond) {
+
+    public static BatchStatusResponseBody fromBatch(String batchId, Batch batch) {
+        return new BatchStatusResponseBody(batchId, batch.getState(), batch.isOpenEnded(),
+                batch.isOpenEnded() ? null : batch.getTotalNumberOfDocuments(),
+                batch.getAddedDocumentsCount(), batch.getSuccessfulDocumentsCount(), batch.getFailedDocumentsCount(),
+                batch.getDocumentLatencyMillis(0.5), batch.getDocumentLatencyMillis(0.95),
+                batch.getThroughputPerSecond());
+    }
+}
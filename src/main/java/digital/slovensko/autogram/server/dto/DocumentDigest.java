@@ -0,0 +1,33 @@
+package digital.slovensko.autogram.server.dto;
+
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+
+/**
+ * Digest of a document which is not sent to Autogram, only a detached signature is created for it.
+ */
+public class DocumentDigest {
+    private final String filename;
+    private final DigestAlgorithm digestAlgorithm;
+    private final String digest;
+
+    public DocumentDigest(String filename, DigestAlgorithm digestAlgorithm, String digest) {
+        this.filename = filename;
+        this.digestAlgorithm = digestAlgorithm;
+        this.digest = digest;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public DigestAlgorithm getDigestAlgorithm() {
+        return digestAlgorithm;
+    }
+
+    /**
+     * @return base64 encoded digest
+     */
+    public String getDigest() {
+        return digest;
+    }
+}
@@ -48,6 +48,12 @@ public class ErrorResponse {
             case "BatchNotStartedException" -> new ErrorResponse(400, "BATCH_NOT_STARTED", (AutogramException) e);
             case "BatchInvalidIdException" -> new ErrorResponse(404, "BATCH_NOT_FOUND", (AutogramException) e);
             case "BatchConflictException" -> new ErrorResponse(400, "BATCH_CONFLICT", (AutogramException) e);
+            case "JobNotFoundException" -> new ErrorResponse(404, "JOB_NOT_FOUND", (AutogramException) e);
+            case "JobStoreFullException" -> new ErrorResponse(429, "TOO_MANY_JOBS", (AutogramException) e);
+            case "SigningKeyNotAvailableException" -> new ErrorResponse(409, "SIGNING_KEY_NOT_AVAILABLE", (AutogramException) e);
+            case "TooManyRequestsException" -> new ErrorResponse(429, "TOO_MANY_REQUESTS", (AutogramException) e);
+            case "EndpointNotFoundException" -> new ErrorResponse(404, "NOT_FOUND", (AutogramException) e);
+            case "MethodNotAllowedException" -> new ErrorResponse(405, "METHOD_NOT_ALLOWED", (AutogramException) e);
             default -> new ErrorResponse(500, "INTERNAL_ERROR", "Unexpected exception signing document", e.getMessage());
         };
     }
@@ -3,12 +3,20 @@ package digital.slovensko.autogram.server.dto;
 public class InfoResponse {
     private final String version;
     private final String status;
+    private final Queue queue;
 
     public InfoResponse(String version, String status) {
+        this(version, status, null);
+    }
+
+    public InfoResponse(String version, String status, Queue queue) {
         this.version = version;
         this.status = status;
+        this.queue = queue;
     }
 
+    public record Queue(int inFlightJobs, int maxJobs, long inFlightBytes, long maxBytes) {}
+
     public static String getStatus() {
         return "READY"; // TODO: check if server is ready
     }
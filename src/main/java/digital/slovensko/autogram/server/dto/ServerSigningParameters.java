@@ -197,18 +197,7 @@ public class ServerSigningParameters {
     }
 
     public void validate(MimeType mimeType) throws RequestValidationException {
-        if (level == null)
-            throw new RequestValidationException("Parameters.Level is required", "");
-
-        var supportedLevels = Arrays.asList(
-                SignatureLevel.XAdES_BASELINE_B,
-                SignatureLevel.PAdES_BASELINE_B,
-                SignatureLevel.CAdES_BASELINE_B,
-                SignatureLevel.XAdES_BASELINE_T,
-                SignatureLevel.PAdES_BASELINE_T);
-
-        if (!supportedLevels.contains(level))
-            throw new UnsupportedSignatureLevelException(level.name());
+        validateLevel();
 
         if (level.getSignatureForm() == SignatureForm.PAdES) {
             if (!mimeType.equals(MimeTypeEnum.PDF))
@@ -250,4 +239,53 @@ public class ServerSigningParameters {
                                 + mimeType.getMimeTypeString());
         }
     }
+
+    private void validateLevel() throws RequestValidationException {
+        if (level == null)
+            throw new RequestValidationException("Parameters.Level is required", "");
+
+        var supportedLevels = Arrays.asList(
+                SignatureLevel.XAdES_BASELINE_B,
+                SignatureLevel.PAdES_BASELINE_B,
+                SignatureLevel.CAdES_BASELINE_B,
+                SignatureLevel.XAdES_BASELINE_T,
+                SignatureLevel.PAdES_BASELINE_T);
+
+        if (!supportedLevels.contains(level))
+            throw new UnsupportedSignatureLevelException(level.name());
+    }
+
+    /**
+     * In two-phase signing the client builds the signed document from its own document, so Autogram must not sign
+     * an XML datacontainer it created from it.
+     */
+    public void validateForPreparation() throws RequestValidationException {
+        if (autoLoadEform || (containerXmlns != null && containerXmlns.contains("xmldatacontainer")))
+            throw new RequestValidationException("Parameters.ContainerXmlns and Parameters.AutoLoadEform are not supported by /sign/prepare",
+                    "XML datacontainer is created from the document by Autogram, the signed document could not be built from the prepared data");
+    }
+
+    /**
+     * Only the digest of the document is known, so only a detached XAdES or CAdES signature without a container
+     * can be created and nothing can be read from the document.
+     */
+    public void validateForDigest(DigestAlgorithm documentDigestAlgorithm) throws RequestValidationException {
+        validateLevel();
+
+        if (level.getSignatureForm() != SignatureForm.XAdES && level.getSignatureForm() != SignatureForm.CAdES)
+            throw new RequestValidationException("Parameters.Level is not supported for DocumentDigest",
+                    "Only XAdES and CAdES signatures can be created from a document digest");
+
+        if (packaging != SignaturePackaging.DETACHED)
+            throw new RequestValidationException("Parameters.Packaging must be DETACHED for DocumentDigest",
+                    "Signature of a document digest can only be detached");
+
+        if (container != null || containerXmlns != null || autoLoadEform)
+            throw new RequestValidationException("Parameters.Container is not supported for DocumentDigest",
+                    "Document digest cannot be signed into a container");
+
+        if ((digestAlgorithm != null ? digestAlgorithm : DigestAlgorithm.SHA256) != documentDigestAlgorithm)
+            throw new RequestValidationException("Parameters.DigestAlgorithm and DocumentDigest.DigestAlgorithm mismatch",
+                    "Document digest must be computed with the signature digest algorithm");
+    }
 }
@@ -0,0 +1,22 @@
+package digital.slovensko.autogram.server.dto;
+
+import digital.slovensko.autogram.server.errors.MalformedBodyException;
+import digital.slovensko.autogram.server.errors.RequestValidationException;
+
+import java.util.Base64;
+
+public record SignCompleteRequestBody(String dataToSign, String sessionToken) {
+    public byte[] getDataToSignBytes() throws RequestValidationException, MalformedBodyException {
+        if (dataToSign == null)
+            throw new RequestValidationException("DataToSign is required", "");
+
+        if (sessionToken == null)
+            throw new RequestValidationException("SessionToken is required", "");
+
+        try {
+            return Base64.getDecoder().decode(dataToSign);
+        } catch (IllegalArgumentException e) {
+            throw new MalformedBodyException("Base64 decoding failed", "Invalid data to sign");
+        }
+    }
+}
@@ -0,0 +1,3 @@
+package digital.slovensko.autogram.server.dto;
+
+public record SignCompleteResponseBody(String signatureValue, String signatureAlgorithm) {}
@@ -0,0 +1,6 @@
+package digital.slovensko.autogram.server.dto;
+
+import java.util.List;
+
+public record SignPrepareResponseBody(String dataToSign, String sessionToken, String signingTime,
+        String digestAlgorithm, String signingCertificate, List<String> certificateChain) {}
@@ -1,23 +1,32 @@
 package digital.slovensko.autogram.server.dto;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
 
 import digital.slovensko.autogram.core.errors.TransformationParsingErrorException;
 
+import digital.slovensko.autogram.core.DocumentSpill;
 import digital.slovensko.autogram.core.SigningParameters;
 import digital.slovensko.autogram.server.errors.MalformedBodyException;
 import digital.slovensko.autogram.server.errors.RequestValidationException;
 import eu.europa.esig.dss.enumerations.MimeType;
-import eu.europa.esig.dss.model.InMemoryDocument;
+import eu.europa.esig.dss.model.DSSDocument;
+import eu.europa.esig.dss.model.DigestDocument;
 import eu.europa.esig.dss.spi.x509.tsp.TSPSource;
 
 import static digital.slovensko.autogram.core.AutogramMimeType.*;
 
 public class SignRequestBody {
     private final Document document;
+    private final List<Document> additionalDocuments;
+    private final DocumentDigest documentDigest;
     private final ServerSigningParameters parameters;
     private final String payloadMimeType;
     private final String batchId;
+    private transient DSSDocument binaryDocument;
+    private transient DSSDocument decodedDocument;
 
     public SignRequestBody(Document document, ServerSigningParameters parameters, String payloadMimeType) {
         this(document, parameters, payloadMimeType, null);
@@ -25,28 +34,135 @@ public class SignRequestBody {
 
     public SignRequestBody(Document document, ServerSigningParameters parameters, String payloadMimeType,
             String batchId) {
+        this(document, null, parameters, payloadMimeType, batchId);
+    }
+
+    public SignRequestBody(Document document, List<Document> additionalDocuments, ServerSigningParameters parameters,
+            String payloadMimeType, String batchId) {
         this.document = document;
+        this.additionalDocuments = additionalDocuments;
+        this.documentDigest = null;
         this.parameters = parameters;
         this.payloadMimeType = payloadMimeType;
         this.batchId = batchId;
     }
 
+    /**
+     * Request with only the digest of the document, a detached signature is returned.
+     */
+    public SignRequestBody(DocumentDigest documentDigest, ServerSigningParameters parameters, String batchId) {
+        this.document = null;
+        this.additionalDocuments = null;
+        this.documentDigest = documentDigest;
+        this.parameters = parameters;
+        this.payloadMimeType = null;
+        this.batchId = batchId;
+    }
+
+    /**
+     * Request with a raw document, e.g. from a multipart/form-data upload. The content is used as is, no matter
+     * whether payloadMimeType says base64 (that still applies to schema and transformation in parameters).
+     */
+    public SignRequestBody(DSSDocument content, String filename, ServerSigningParameters parameters,
+            String payloadMimeType, String batchId) {
+        this(new Document(filename, null), parameters, payloadMimeType, batchId);
+        this.binaryDocument = content;
+    }
+
     public void validateDocument() throws RequestValidationException, MalformedBodyException {
+        if (documentDigest != null) {
+            validateDocumentDigest();
+            return;
+        }
+
         if (payloadMimeType == null)
             throw new RequestValidationException("PayloadMimeType is required", "");
 
         if (document == null)
             throw new RequestValidationException("Document is required", "");
 
-        if (document.getContent() == null)
+        if (document.getContent() == null && binaryDocument == null && decodedDocument == null)
             throw new RequestValidationException("Document.Content is required", "");
+
+        if (additionalDocuments == null)
+            return;
+
+        var filenames = new HashSet<String>();
+        filenames.add(document.getFilename());
+        for (var additionalDocument : additionalDocuments) {
+            if (additionalDocument == null || additionalDocument.getContent() == null)
+                throw new RequestValidationException("AdditionalDocuments.Content is required", "");
+
+            if (additionalDocument.getFilename() == null)
+                throw new RequestValidationException("AdditionalDocuments.Filename is required", "");
+
+            if (!filenames.add(additionalDocument.getFilename()))
+                throw new RequestValidationException("Duplicate filename",
+                        "Documents in one container must have unique filenames: " + additionalDocument.getFilename());
+        }
     }
 
-    public InMemoryDocument getDocument() {
-        var content = decodeDocumentContent(document.getContent(), isBase64());
-        var filename = document.getFilename();
+    /**
+     * Document content is decoded only once, on first access, and the same instance is shared by validation,
+     * parameter building and the signing job. For a digest-only request this is a DigestDocument without content.
+     */
+    public DSSDocument getDocument() {
+        if (decodedDocument == null && isDigestOnly()) {
+            var digestDocument = new DigestDocument(documentDigest.getDigestAlgorithm(), documentDigest.getDigest(),
+                    documentDigest.getFilename());
+            digestDocument.setMimeType(MimeType.fromFileName(documentDigest.getFilename()));
+            decodedDocument = digestDocument;
+        }
+
+        if (decodedDocument == null && binaryDocument != null) {
+            // the upload was already written into a document (spilled if large), only its mime type is known now
+            binaryDocument.setName(document.getFilename());
+            binaryDocument.setMimeType(getMimetype());
+            decodedDocument = binaryDocument;
+        }
+
+        if (decodedDocument == null)
+            decodedDocument = createDocument(document.getContent(), isBase64(), document.getFilename(), getMimetype());
+
+        return decodedDocument;
+    }
+
+    private void validateDocumentDigest() throws RequestValidationException, MalformedBodyException {
+        if (document != null || additionalDocuments != null)
+            throw new RequestValidationException("Document and DocumentDigest are mutually exclusive",
+                    "Send either the document or its digest");
+
+        if (documentDigest.getFilename() == null)
+            throw new RequestValidationException("DocumentDigest.Filename is required", "");
+
+        if (documentDigest.getDigestAlgorithm() == null)
+            throw new RequestValidationException("DocumentDigest.DigestAlgorithm is required", "");
+
+        if (documentDigest.getDigest() == null)
+            throw new RequestValidationException("DocumentDigest.Digest is required", "");
+
+        try {
+            Base64.getDecoder().decode(documentDigest.getDigest());
+        } catch (IllegalArgumentException e) {
+            throw new MalformedBodyException("Base64 decoding failed", "Invalid document digest");
+        }
+    }
+
+    public boolean isDigestOnly() {
+        return documentDigest != null;
+    }
 
-        return new InMemoryDocument(content, filename, getMimetype());
+    /**
+     * Documents signed together with the main document into one ASiC-E container. Content is decoded the same way
+     * as the main document content, mime type is guessed from the filename.
+     */
+    public List<DSSDocument> getAdditionalDocuments() {
+        if (additionalDocuments == null)
+            return List.of();
+
+        return additionalDocuments.stream().map((additionalDocument) -> createDocument(additionalDocument.getContent(),
+                isBase64(), additionalDocument.getFilename(), MimeType.fromFileName(additionalDocument.getFilename())))
+                .toList();
     }
 
     public void validateSigningParameters() throws RequestValidationException, MalformedBodyException,
@@ -54,7 +170,21 @@ public class SignRequestBody {
         if (parameters == null)
             throw new RequestValidationException("Parameters are required", "");
 
-        parameters.validate(getDocument().getMimeType());
+        if (isDigestOnly())
+            parameters.validateForDigest(documentDigest.getDigestAlgorithm());
+        else
+            parameters.validate(getMimetype());
+    }
+
+    /**
+     * Additional check of a /sign/prepare request, the signing parameters have been validated already.
+     */
+    public void validateForPreparation() throws RequestValidationException {
+        if (batchId != null || (additionalDocuments != null && !additionalDocuments.isEmpty()))
+            throw new RequestValidationException("Unsupported two-phase signing request",
+                    "BatchId and AdditionalDocuments are not supported by /sign/prepare");
+
+        parameters.validateForPreparation();
     }
 
     public SigningParameters getParameters(TSPSource tspSource) {
@@ -70,17 +200,21 @@ public class SignRequestBody {
     }
 
     private boolean isBase64() {
-        return payloadMimeType.contains("base64");
+        return payloadMimeType != null && payloadMimeType.contains("base64");
     }
 
-    private static byte[] decodeDocumentContent(String content, boolean isBase64) throws MalformedBodyException {
+    /**
+     * Large documents are decoded into a temporary file, see {@link DocumentSpill}.
+     */
+    private static DSSDocument createDocument(String content, boolean isBase64, String filename, MimeType mimeType)
+            throws MalformedBodyException {
         if (isBase64)
             try {
-                return Base64.getDecoder().decode(content);
+                return DocumentSpill.fromBase64(content, filename, mimeType);
             } catch (IllegalArgumentException e) {
                 throw new MalformedBodyException("Base64 decoding failed", "Invalid document content");
             }
 
-        return content.getBytes();
+        return DocumentSpill.fromBytes(content.getBytes(StandardCharsets.UTF_8), filename, mimeType);
     }
 }
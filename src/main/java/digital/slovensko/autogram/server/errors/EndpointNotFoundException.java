@@ -0,0 +1,10 @@
+package digital.slovensko.autogram.server.errors;
+
+import digital.slovensko.autogram.core.errors.AutogramException;
+
+public class EndpointNotFoundException extends AutogramException {
+    public EndpointNotFoundException(String path) {
+        super("Not found", "Endpoint " + path + " was not found",
+                "Check the API documentation for the available endpoints.");
+    }
+}
@@ -0,0 +1,10 @@
+package digital.slovensko.autogram.server.errors;
+
+import digital.slovensko.autogram.core.errors.AutogramException;
+
+public class JobNotFoundException extends AutogramException {
+    public JobNotFoundException(String jobId) {
+        super("Job not found", "Job " + jobId + " was not found",
+                "The job does not exist, its result was already fetched or it expired.");
+    }
+}
@@ -0,0 +1,10 @@
+package digital.slovensko.autogram.server.errors;
+
+import digital.slovensko.autogram.core.errors.AutogramException;
+
+public class JobStoreFullException extends AutogramException {
+    public JobStoreFullException(int maxJobs) {
+        super("Too many jobs", "Only " + maxJobs + " jobs can be stored at once",
+                "Fetch results of finished jobs or wait until they expire.");
+    }
+}
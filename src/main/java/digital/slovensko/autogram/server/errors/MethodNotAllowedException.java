@@ -0,0 +1,10 @@
+package digital.slovensko.autogram.server.errors;
+
+import digital.slovensko.autogram.core.errors.AutogramException;
+
+public class MethodNotAllowedException extends AutogramException {
+    public MethodNotAllowedException(String method, String path) {
+        super("Method not allowed", "Method " + method + " is not allowed on " + path,
+                "Check the API documentation for the methods supported by the endpoint.");
+    }
+}
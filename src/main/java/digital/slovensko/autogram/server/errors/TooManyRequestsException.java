@@ -0,0 +1,9 @@
+package digital.slovensko.autogram.server.errors;
+
+import digital.slovensko.autogram.core.errors.AutogramException;
+
+public class TooManyRequestsException extends AutogramException {
+    public TooManyRequestsException(String message) {
+        super("Too many requests", message, "Server is busy signing other documents, retry after a while.");
+    }
+}
@@ -0,0 +1,58 @@
+package digital.slovensko.autogram.server.filters;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import digital.slovensko.autogram.core.metrics.Metrics;
+
+/**
+ * Count requests and measure their latency per context.
+ *
+ * Sign responses are written asynchronously after the handler returns, so the request is measured until
+ * the response body is closed, not until the handler returns.
+ */
+public class MetricsFilter extends Filter {
+    @Override
+    public String description() {
+        return "Count requests and measure their latency";
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        var start = System.nanoTime();
+        var recorded = new AtomicBoolean(false);
+
+        exchange.setStreams(null, new FilterOutputStream(exchange.getResponseBody()) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    if (recorded.compareAndSet(false, true))
+                        record(exchange, start);
+                }
+            }
+        });
+
+        chain.doFilter(exchange);
+    }
+
+    private static void record(HttpExchange exchange, long start) {
+        var path = exchange.getHttpContext().getPath();
+
+        Metrics.counter("autogram_http_requests_total", "Number of HTTP requests",
+                "path", path, "method", exchange.getRequestMethod(), "code", String.valueOf(exchange.getResponseCode()))
+                .inc();
+        Metrics.histogram("autogram_http_request_duration_seconds", "HTTP request latency until the response is sent",
+                "path", path).observeSince(start);
+    }
+}
@@ -2,9 +2,10 @@ package digital.slovensko.autogram.ui;
 
 import java.io.File;
 import java.nio.file.Path;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import digital.slovensko.autogram.core.Autogram;
 import digital.slovensko.autogram.core.Batch;
@@ -20,9 +21,11 @@ import eu.europa.esig.dss.spi.x509.tsp.TSPSource;
 public class BatchGuiFileResponder extends BatchResponder {
     private final Autogram autogram;
     private final List<File> list;
-    private final Map<File, File> targetFiles = new HashMap<>();
-    private final Map<File, AutogramException> errors = new HashMap<>();
-    private boolean uiNotifiedOnAllFilesSigned = false;
+    // filled from signing pipeline threads, files without a result are simply missing
+    private final Map<File, File> targetFiles = new ConcurrentHashMap<>();
+    private final Map<File, AutogramException> errors = new ConcurrentHashMap<>();
+    // batch counters are incremented before the maps are filled, so count files whose result is already stored
+    private final AtomicInteger processedFiles = new AtomicInteger();
     private final TargetPath targetPath;
     private final boolean checkPDFACompliance;
     private final SignatureLevel pDFSignatureLevel;
@@ -50,8 +53,6 @@ public class BatchGuiFileResponder extends BatchResponder {
 
         for (File file : list) {
             try {
-                targetFiles.put(file, null);
-                errors.put(file, null);
                 var responder = new ResponderInBatch(new SaveFileFromBatchResponder(file, targetPath, (File targetFile) -> {
                     targetFiles.put(file, targetFile);
                     Logging.log(batch.getProcessedDocumentsCount() + " / " + batch.getTotalNumberOfDocuments() + " signed " + file.toString());
@@ -72,10 +73,10 @@ public class BatchGuiFileResponder extends BatchResponder {
         }
     }
 
-    private void onAllFilesSigned(Batch batch) { // synchronized
-        Logging.log("onAllFilesSigned " + batch.isAllProcessed() + " " + uiNotifiedOnAllFilesSigned);
-        if (batch.isAllProcessed() && !uiNotifiedOnAllFilesSigned) {
-            uiNotifiedOnAllFilesSigned = true;
+    private void onAllFilesSigned(Batch batch) {
+        var processed = processedFiles.incrementAndGet();
+        Logging.log("onAllFilesSigned " + processed + " / " + batch.getTotalNumberOfDocuments());
+        if (processed == batch.getTotalNumberOfDocuments()) {
             Logging.log(errors.values().stream().map(e -> e == null ? "" : e.toString()).toList());
             var result = new BatchUiResult(targetPath, targetFiles, errors);
             autogram.onDocumentBatchSaved(result);
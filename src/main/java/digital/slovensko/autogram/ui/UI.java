@@ -9,6 +9,7 @@ import eu.europa.esig.dss.token.DSSPrivateKeyEntry;
 
 import java.io.File;
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.concurrent.FutureTask;
 import java.util.function.Consumer;
 
@@ -39,6 +40,22 @@ public interface UI {
 
     void onWorkThreadDo(Runnable callback);
 
+    /**
+     * Run the callback off the UI thread on the pool of the kind, inline if the caller already is a worker of that
+     * pool. Token work is therefore serialized on the TOKEN thread from whichever thread it is started.
+     */
+    default void onWorkThreadDo(WorkScheduler.Kind kind, Runnable callback) {
+        onWorkThreadDo(callback);
+    }
+
+    /**
+     * Executor for work that must always be queued on the pool of the kind, also from its own workers, e.g. batch
+     * signatures taking turns with other work on the TOKEN thread.
+     */
+    default Executor getWorkExecutor(WorkScheduler.Kind kind) {
+        return (task) -> onWorkThreadDo(kind, task);
+    }
+
     void onUIThreadDo(Runnable callback);
 
     void onUpdateAvailable();
@@ -59,5 +76,12 @@ public interface UI {
 
     char[] getContextSpecificPassword();
 
+    /**
+     * @return key picked by the user for signing, null if none is picked or the UI does not keep one
+     */
+    default SigningKey getActiveSigningKey() {
+        return null;
+    }
+
     public void updateBatch();
 }
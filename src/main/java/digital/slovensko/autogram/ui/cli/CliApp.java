@@ -7,16 +7,22 @@ import digital.slovensko.autogram.core.errors.SourceDoesNotExistException;
 import digital.slovensko.autogram.ui.SaveFileResponder;
 
 import java.io.File;
+import java.time.Duration;
 import java.util.Arrays;
 
 import org.apache.commons.cli.CommandLine;
 
 public class CliApp {
     public static void start(CommandLine cmd) {
+        var workScheduler = WorkScheduler.fromConfiguration();
+        CliSettings openedSettings = null;
+        Autogram openedAutogram = null;
         try {
             var settings = CliSettings.fromCmd(cmd);
-            var ui = new CliUI(settings);
+            openedSettings = settings;
+            var ui = new CliUI(settings, workScheduler);
             var autogram = new Autogram(ui, settings);
+            openedAutogram = autogram;
 
             if (settings.getSource() == null)
                 throw new SourceNotDefindedException();
@@ -47,6 +53,18 @@ public class CliApp {
 
         } catch (AutogramException e) {
             System.err.println(CliUI.parseError(e));
+        } finally {
+            try {
+                if (openedAutogram != null)
+                    openedAutogram.closeTokenSessions(Duration.ofSeconds(2));
+
+                workScheduler.shutdown(Duration.ofSeconds(2));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (openedSettings != null)
+                openedSettings.closeTspSource();
         }
     }
 }
@@ -4,6 +4,7 @@ import static digital.slovensko.autogram.util.DSSUtils.parseCN;
 
 import java.io.File;
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
@@ -14,6 +15,7 @@ import digital.slovensko.autogram.core.SigningJob;
 import digital.slovensko.autogram.core.SigningKey;
 import digital.slovensko.autogram.core.Updater;
 import digital.slovensko.autogram.core.ValidationReports;
+import digital.slovensko.autogram.core.WorkScheduler;
 import digital.slovensko.autogram.core.errors.*;
 import digital.slovensko.autogram.core.visualization.Visualization;
 import digital.slovensko.autogram.drivers.TokenDriver;
@@ -24,12 +26,14 @@ import eu.europa.esig.dss.token.DSSPrivateKeyEntry;
 
 public class CliUI implements UI {
     private final CliSettings settings;
+    private final WorkScheduler workScheduler;
     SigningKey activeKey;
     int nJobsSigned = 1;
     int nJobsTotal = 0;
 
-    public CliUI(CliSettings settings) {
+    public CliUI(CliSettings settings, WorkScheduler workScheduler) {
         this.settings = settings;
+        this.workScheduler = workScheduler;
     }
 
     @Override
@@ -123,7 +127,17 @@ public class CliUI implements UI {
 
     @Override
     public void onWorkThreadDo(Runnable callback) {
-        callback.run(); // no threads
+        onWorkThreadDo(WorkScheduler.Kind.CPU, callback);
+    }
+
+    @Override
+    public void onWorkThreadDo(WorkScheduler.Kind kind, Runnable callback) {
+        workScheduler.executeAndWait(kind, callback); // CLI is sequential, wait for the work to finish
+    }
+
+    @Override
+    public Executor getWorkExecutor(WorkScheduler.Kind kind) {
+        return workScheduler.executor(kind);
     }
 
     @Override
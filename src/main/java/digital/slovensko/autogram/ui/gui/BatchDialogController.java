@@ -186,8 +186,9 @@ public class BatchDialogController implements SuppressedFocusController {
     }
 
     private void updateProgressBar() {
+        // open-ended batches report progress against the documents received so far
         progressBar.setProgress(
-                (double) batch.getProcessedDocumentsCount() / batch.getTotalNumberOfDocuments());
+                (double) batch.getProcessedDocumentsCount() / Math.max(1, batch.getTotalNumberOfDocuments()));
         progressBarText.setText(String.format("%d / %d", batch.getProcessedDocumentsCount(),
                 batch.getTotalNumberOfDocuments()));
     }
@@ -0,0 +1,126 @@
+package digital.slovensko.autogram.ui.gui;
+
+import digital.slovensko.autogram.core.visualization.Visualization;
+import digital.slovensko.autogram.ui.Visualizer;
+import eu.europa.esig.dss.model.DSSDocument;
+import javafx.concurrent.Worker;
+import javafx.event.ActionEvent;
+import javafx.event.Event;
+import javafx.fxml.FXML;
+import javafx.scene.Cursor;
+import javafx.scene.Node;
+import javafx.scene.control.Button;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.control.TextArea;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.input.ContextMenuEvent;
+import javafx.scene.layout.VBox;
+import javafx.scene.text.Text;
+import javafx.scene.web.WebView;
+import javafx.stage.Stage;
+
+/**
+ * Read-only preview of a document signed together with the document of a signing dialog.
+ */
+public class DocumentPreviewDialogController implements SuppressedFocusController, Visualizer {
+    private final Visualization visualization;
+    private final String title;
+
+    @FXML
+    VBox mainBox;
+    @FXML
+    TextArea plainTextArea;
+    @FXML
+    WebView webView;
+    @FXML
+    VBox webViewContainer;
+    @FXML
+    ImageView imageVisualization;
+    @FXML
+    ScrollPane imageVisualizationContainer;
+    @FXML
+    VBox unsupportedVisualizationInfoBox;
+    @FXML
+    Text headerText;
+    @FXML
+    Button mainButton;
+
+    public DocumentPreviewDialogController(Visualization visualization, String title) {
+        this.visualization = visualization;
+        this.title = title;
+    }
+
+    public void initialize() {
+        headerText.setText(title);
+        visualization.initialize(this);
+    }
+
+    public void onCloseAction(ActionEvent event) {
+        ((Stage) mainButton.getScene().getWindow()).close();
+    }
+
+    public void showPlainTextVisualization(String text) {
+        plainTextArea.addEventFilter(ContextMenuEvent.CONTEXT_MENU_REQUESTED, Event::consume);
+        plainTextArea.setText(text);
+        plainTextArea.setVisible(true);
+        plainTextArea.setManaged(true);
+    }
+
+    public void showHTMLVisualization(String html) {
+        webView.setContextMenuEnabled(false);
+        webView.getEngine().setJavaScriptEnabled(false);
+        var engine = webView.getEngine();
+        engine.getLoadWorker().stateProperty().addListener((observable, oldState, newState) -> {
+            if (newState == Worker.State.SUCCEEDED) {
+                engine.getDocument().getElementById("frame").setAttribute("srcdoc", html);
+            }
+        });
+        engine.load(getClass().getResource("visualization-html.html").toExternalForm());
+        webViewContainer.getStyleClass().add("autogram-visualizer-html");
+        webViewContainer.setVisible(true);
+        webViewContainer.setManaged(true);
+    }
+
+    public void showPDFVisualization(String base64EncodedPdf) {
+        var engine = webView.getEngine();
+        engine.setJavaScriptEnabled(true);
+        engine.getLoadWorker().stateProperty().addListener((observable, oldState, newState) -> {
+            if (newState == Worker.State.SUCCEEDED) {
+                engine.executeScript(
+                        "displayPdf('" + base64EncodedPdf + "')");
+            }
+        });
+        engine.load(getClass().getResource("visualization-pdf.html").toExternalForm());
+        webViewContainer.getStyleClass().add("autogram-visualizer-pdf");
+        webViewContainer.setVisible(true);
+        webViewContainer.setManaged(true);
+    }
+
+    public void showImageVisualization(DSSDocument doc) {
+        imageVisualization.fitWidthProperty().bind(imageVisualizationContainer.widthProperty().subtract(4));
+        imageVisualization.setImage(new Image(doc.openStream()));
+        imageVisualization.setPreserveRatio(true);
+        imageVisualization.setSmooth(true);
+        imageVisualization.setCursor(Cursor.OPEN_HAND);
+        imageVisualizationContainer.setPannable(true);
+        imageVisualizationContainer.setFitToWidth(true);
+        imageVisualizationContainer.setVisible(true);
+        imageVisualizationContainer.setManaged(true);
+    }
+
+    public void showUnsupportedVisualization() {
+        unsupportedVisualizationInfoBox.setVisible(true);
+        unsupportedVisualizationInfoBox.setManaged(true);
+    }
+
+    @Override
+    public Node getNodeForLoosingFocus() {
+        return mainBox;
+    }
+
+    @Override
+    public void setPrefWidth(double prefWidth) {
+        mainBox.setPrefWidth(prefWidth);
+    }
+}
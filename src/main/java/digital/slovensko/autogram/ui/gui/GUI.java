@@ -1,11 +1,13 @@
 package digital.slovensko.autogram.ui.gui;
 
 import java.io.File;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.WeakHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.FutureTask;
 import java.util.function.Consumer;
 
@@ -14,10 +16,13 @@ import digital.slovensko.autogram.core.errors.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import digital.slovensko.autogram.core.visualization.DocumentVisualizationBuilder;
+import digital.slovensko.autogram.core.visualization.UnsupportedVisualization;
 import digital.slovensko.autogram.core.visualization.Visualization;
 import digital.slovensko.autogram.drivers.TokenDriver;
 import digital.slovensko.autogram.ui.BatchUiResult;
 import digital.slovensko.autogram.ui.UI;
+import eu.europa.esig.dss.model.DSSDocument;
 import eu.europa.esig.dss.token.DSSPrivateKeyEntry;
 import javafx.application.HostServices;
 import javafx.application.Platform;
@@ -35,14 +40,16 @@ public class GUI implements UI {
     private boolean driverWasAlreadySet = false;
     private final HostServices hostServices;
     private final UserSettings userSettings;
-    private BatchDialogController batchController;
+    private final WorkScheduler workScheduler;
+    private final Map<Batch, BatchDialogController> batchControllers = new LinkedHashMap<>();
     private static final boolean DEBUG = false;
     private static Logger logger = LoggerFactory.getLogger(GUI.class);
     private int nWindows = 0;
 
-    public GUI(HostServices hostServices, UserSettings userSettings) {
+    public GUI(HostServices hostServices, UserSettings userSettings, WorkScheduler workScheduler) {
         this.hostServices = hostServices;
         this.userSettings = userSettings;
+        this.workScheduler = workScheduler;
     }
 
     @Override
@@ -52,7 +59,8 @@ public class GUI implements UI {
 
     @Override
     public void startBatch(Batch batch, Autogram autogram, Consumer<SigningKey> callback) {
-        batchController = new BatchDialogController(batch, callback, autogram, this);
+        var batchController = new BatchDialogController(batch, callback, autogram, this);
+        batchControllers.put(batch, batchController);
         var root = GUIUtils.loadFXML(batchController, "batch-dialog.fxml");
 
         var stage = new Stage();
@@ -68,17 +76,19 @@ public class GUI implements UI {
 
     @Override
     public void cancelBatch(Batch batch) {
-        batchController.close();
+        var batchController = batchControllers.remove(batch);
+        if (batchController != null)
+            batchController.close();
         batch.end();
         refreshKeyOnAllJobs();
         enableSigningOnAllJobs();
     }
 
     public void updateBatch() {
-        if (batchController == null)
-            return;
         assertOnUIThread();
-        batchController.update();
+        // update may close the dialog of a finished batch
+        List.copyOf(batchControllers.values()).forEach(BatchDialogController::update);
+        batchControllers.keySet().removeIf(Batch::isEnded);
     }
 
     @Override
@@ -162,15 +172,12 @@ public class GUI implements UI {
 
     public void refreshKeyOnAllJobs() {
         jobControllers.values().forEach(SigningDialogController::refreshSigningKey);
-        if (batchController != null) {
-            batchController.refreshSigningKey();
-        }
+        batchControllers.values().forEach(BatchDialogController::refreshSigningKey);
     }
 
     public void enableSigningOnAllJobs() {
         jobControllers.values().forEach(SigningDialogController::enableSigning);
-        if (batchController != null)
-            batchController.enableSigning();
+        batchControllers.values().forEach(BatchDialogController::enableSigning);
     }
 
     @Override
@@ -329,6 +336,36 @@ public class GUI implements UI {
                 -> autogram.checkAndValidateSignatures(visualization.getJob()));
     }
 
+    public void showAdditionalDocumentPreview(SigningJob job, DSSDocument document) {
+        onWorkThreadDo(() -> {
+            Visualization visualization;
+            try {
+                visualization = DocumentVisualizationBuilder.fromAdditionalDocument(job, document);
+            } catch (AutogramException e) {
+                onUIThreadDo(() -> showError(e));
+                return;
+            } catch (Exception e) {
+                visualization = new UnsupportedVisualization(job);
+            }
+
+            var preview = visualization;
+            onUIThreadDo(() -> {
+                var title = "Dokument " + document.getName();
+                var controller = new DocumentPreviewDialogController(preview, title);
+                var root = GUIUtils.loadFXML(controller, "document-preview-dialog.fxml");
+
+                var stage = new Stage();
+                stage.setTitle(title);
+                stage.setScene(new Scene(root));
+                stage.sizeToScene();
+
+                GUIUtils.suppressDefaultFocus(stage, controller);
+                GUIUtils.showOnTop(stage);
+                setUserFriendlyPositionAndLimits(stage);
+            });
+        });
+    }
+
     @Override
     public void showIgnorableExceptionDialog(IgnorableException e) {
         var controller = new IgnorableExceptionDialogController(e);
@@ -347,8 +384,7 @@ public class GUI implements UI {
 
     private void disableKeyPicking() {
         jobControllers.values().forEach(SigningDialogController::disableKeyPicking);
-        if (batchController != null)
-            batchController.disableKeyPicking();
+        batchControllers.values().forEach(BatchDialogController::disableKeyPicking);
     }
 
     @Override
@@ -423,13 +459,24 @@ public class GUI implements UI {
 
     @Override
     public void onWorkThreadDo(Runnable callback) {
-        if (Platform.isFxApplicationThread()) {
-            new Thread(callback).start();
-        } else {
+        onWorkThreadDo(WorkScheduler.Kind.CPU, callback);
+    }
+
+    @Override
+    public void onWorkThreadDo(WorkScheduler.Kind kind, Runnable callback) {
+        if (WorkScheduler.currentKind() == kind) {
+            // already on the pool of this kind, e.g. a TOKEN task signing right after picking the key
             callback.run();
+        } else {
+            workScheduler.execute(kind, callback);
         }
     }
 
+    @Override
+    public Executor getWorkExecutor(WorkScheduler.Kind kind) {
+        return workScheduler.executor(kind);
+    }
+
     @Override
     public void onUIThreadDo(Runnable callback) {
         if (Platform.isFxApplicationThread()) {
@@ -449,6 +496,7 @@ public class GUI implements UI {
             throw new RuntimeException("Can be run only on work thread");
     }
 
+    @Override
     public SigningKey getActiveSigningKey() {
         return activeKey;
     }
@@ -476,8 +524,7 @@ public class GUI implements UI {
 
     public void disableSigning() {
         jobControllers.values().forEach(SigningDialogController::disableSigning);
-        if (batchController != null)
-            batchController.disableSigning();
+        batchControllers.values().forEach(BatchDialogController::disableSigning);
     }
 
     public void resetSigningKey() {
@@ -8,7 +8,9 @@ import digital.slovensko.autogram.core.Autogram;
 import digital.slovensko.autogram.core.DefaultDriverDetector;
 import digital.slovensko.autogram.core.LaunchParameters;
 import digital.slovensko.autogram.core.UserSettings;
+import digital.slovensko.autogram.core.WorkScheduler;
 import digital.slovensko.autogram.server.AutogramServer;
+import digital.slovensko.autogram.server.ServerExecutorMode;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.scene.Scene;
@@ -17,16 +19,21 @@ import javafx.stage.Stage;
 public class GUIApp extends Application {
     private final ScheduledExecutorService scheduledExecutorService = Executors.newScheduledThreadPool(1);
     private final ExecutorService cachedExecutorService = Executors.newFixedThreadPool(8);
+    private final ExecutorService serverExecutorService = ServerExecutorMode.fromConfiguration().createExecutor();
+    private final WorkScheduler workScheduler = WorkScheduler.fromConfiguration();
+    private UserSettings userSettings;
+    private Autogram autogram;
 
     @Override
     public void start(Stage windowStage) throws Exception {
-        var userSettings = UserSettings.load();
-        var ui = new GUI(getHostServices(), userSettings);
-        var autogram = new Autogram(ui, userSettings);
+        userSettings = UserSettings.load();
+        var ui = new GUI(getHostServices(), userSettings, workScheduler);
+        autogram = new Autogram(ui, userSettings);
 
         Platform.setImplicitExit(false);
         autogram.checkForUpdate();
         autogram.initializeSignatureValidator(scheduledExecutorService, cachedExecutorService, userSettings.getTrustedList());
+        autogram.initializeSessionExpiry(scheduledExecutorService);
 
         setUserAgentStylesheet(getClass().getResource("idsk.css").toExternalForm());
 
@@ -36,7 +43,7 @@ public class GUIApp extends Application {
         var scene = new Scene(root);
 
         var params = LaunchParameters.fromParameters(getParameters());
-        var server = new AutogramServer(autogram, params.getHost(), params.getPort(), params.isProtocolHttps(), cachedExecutorService);
+        var server = new AutogramServer(autogram, params.getHost(), params.getPort(), params.isProtocolHttps(), serverExecutorService);
 
         if (userSettings.isServerEnabled()) {
             server.start();
@@ -62,10 +69,26 @@ public class GUIApp extends Application {
 
     @Override
     public void stop() throws Exception {
+        // stop accepting tasks first, otherwise awaitTermination always waits the whole timeout
+        scheduledExecutorService.shutdown();
+        cachedExecutorService.shutdown();
+        serverExecutorService.shutdown();
+
         if (!scheduledExecutorService.awaitTermination(2, java.util.concurrent.TimeUnit.SECONDS))
             scheduledExecutorService.shutdownNow();
 
         if (!cachedExecutorService.awaitTermination(2, java.util.concurrent.TimeUnit.SECONDS))
             cachedExecutorService.shutdownNow();
+
+        if (!serverExecutorService.awaitTermination(2, java.util.concurrent.TimeUnit.SECONDS))
+            serverExecutorService.shutdownNow();
+
+        if (autogram != null)
+            autogram.closeTokenSessions(java.time.Duration.ofSeconds(2));
+
+        workScheduler.shutdown(java.time.Duration.ofSeconds(2));
+
+        if (userSettings != null)
+            userSettings.closeTspSource();
     }
 }
@@ -15,13 +15,16 @@ import javafx.scene.Cursor;
 import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.Hyperlink;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.control.TextArea;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.ContextMenuEvent;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.Text;
+import javafx.scene.text.TextFlow;
 import javafx.scene.web.WebView;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
@@ -62,6 +65,8 @@ public class SigningDialogController implements SuppressedFocusController, Visua
     @FXML
     VBox signaturesTable;
     @FXML
+    VBox additionalDocumentsBox;
+    @FXML
     Text headerText;
 
     public SigningDialogController(Visualization visualization, Autogram autogram, GUI gui, String title,
@@ -77,6 +82,7 @@ public class SigningDialogController implements SuppressedFocusController, Visua
         headerText.setText(title);
         signaturesTable.setManaged(false);
         signaturesTable.setVisible(false);
+        renderAdditionalDocuments();
         refreshSigningKey();
         visualization.initialize(this);
         autogram.checkPDFACompliance(visualization.getJob());
@@ -211,6 +217,33 @@ public class SigningDialogController implements SuppressedFocusController, Visua
             signaturesNotValidatedDialogController.close();
     }
 
+    /**
+     * Documents signed together with the visualized one go into the same signature, so the user must see what they
+     * sign. Each of them can be opened in a preview.
+     */
+    private void renderAdditionalDocuments() {
+        var documents = visualization.getJob().getAdditionalDocuments();
+        if (documents.isEmpty())
+            return;
+
+        var heading = new Text("Spolu s týmto dokumentom podpíšete aj ďalšie dokumenty (" + documents.size() + "):");
+        heading.getStyleClass().add("autogram-heading-s");
+        additionalDocumentsBox.getChildren().add(new TextFlow(heading));
+
+        for (var document : documents) {
+            var name = new Text(document.getName());
+            name.getStyleClass().add("autogram-body");
+            var previewLink = new Hyperlink("Zobraziť");
+            previewLink.getStyleClass().addAll("autogram-body", "autogram-link");
+            previewLink.setOnAction(e -> gui.showAdditionalDocumentPreview(visualization.getJob(), document));
+
+            additionalDocumentsBox.getChildren().add(new HBox(new TextFlow(name), previewLink));
+        }
+
+        additionalDocumentsBox.setManaged(true);
+        additionalDocumentsBox.setVisible(true);
+    }
+
     public void renderSignatures(Reports reports, boolean isValidated, boolean areTLsLoaded) {
         if (reports == null)
             return;
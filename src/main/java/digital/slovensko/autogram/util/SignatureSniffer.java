@@ -0,0 +1,138 @@
+package digital.slovensko.autogram.util;
+
+import eu.europa.esig.dss.model.DSSDocument;
+import eu.europa.esig.dss.model.DigestDocument;
+import eu.europa.esig.dss.model.FileDocument;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Tells documents without any signature apart without validating them, which is much faster than running a
+ * DSS validation just to find out there is nothing to validate.
+ *
+ * PDF - every signature dictionary has a /ByteRange, which is never compressed
+ * ASiC - signatures and timestamps are META-INF entries
+ * XML - XAdES signatures are ds:Signature elements
+ */
+public class SignatureSniffer {
+    private static final byte[] PDF_MAGIC = "%PDF".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ZIP_MAGIC = {'P', 'K', 3, 4};
+    private static final byte[] BYTE_RANGE = "/ByteRange".getBytes(StandardCharsets.US_ASCII);
+    private static final String XMLDSIG_NS = "http://www.w3.org/2000/09/xmldsig#";
+
+    /**
+     * @return true if the document surely has no signature, false if it has one or it could not be told
+     */
+    public static boolean isUnsigned(DSSDocument document) {
+        if (document == null || document instanceof DigestDocument)
+            return false;
+
+        try (var in = new BufferedInputStream(document.openStream())) {
+            in.mark(PDF_MAGIC.length);
+            var header = in.readNBytes(PDF_MAGIC.length);
+            in.reset();
+
+            if (Arrays.equals(header, PDF_MAGIC))
+                return !contains(in, BYTE_RANGE);
+
+            if (Arrays.equals(header, ZIP_MAGIC))
+                return document instanceof FileDocument fileDocument ? !hasSignatureEntry(fileDocument)
+                        : !hasSignatureEntry(in);
+
+            if (isXml(in))
+                return !hasXmlSignature(in);
+
+            return false;
+
+        } catch (IOException | XMLStreamException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static boolean contains(InputStream in, byte[] pattern) throws IOException {
+        var buffer = new byte[64 * 1024];
+        var kept = 0;
+        int read;
+        while ((read = in.read(buffer, kept, buffer.length - kept)) != -1) {
+            var length = kept + read;
+            if (indexOf(buffer, length, pattern) >= 0)
+                return true;
+
+            // keep the tail, the pattern may span two reads
+            kept = Math.min(pattern.length - 1, length);
+            System.arraycopy(buffer, length - kept, buffer, 0, kept);
+        }
+
+        return false;
+    }
+
+    private static int indexOf(byte[] buffer, int length, byte[] pattern) {
+        outer:
+        for (int i = 0; i <= length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++)
+                if (buffer[i + j] != pattern[j])
+                    continue outer;
+
+            return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Central directory of a file is read without reading the entries.
+     */
+    private static boolean hasSignatureEntry(FileDocument document) throws IOException {
+        try (var zip = new ZipFile(document.getFile())) {
+            return zip.stream().anyMatch(SignatureSniffer::isSignatureEntry);
+        }
+    }
+
+    private static boolean hasSignatureEntry(InputStream in) throws IOException {
+        var zip = new ZipInputStream(in);
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null)
+            if (isSignatureEntry(entry))
+                return true;
+
+        return false;
+    }
+
+    private static boolean isSignatureEntry(ZipEntry entry) {
+        var name = entry.getName().toLowerCase(Locale.ROOT);
+        return name.startsWith("meta-inf/") && (name.contains("signature") || name.contains("timestamp")
+                || name.contains("evidencerecord"));
+    }
+
+    private static boolean isXml(BufferedInputStream in) throws IOException {
+        in.mark(1024);
+        var start = new String(in.readNBytes(1024), StandardCharsets.UTF_8).replace("\uFEFF", "").stripLeading();
+        in.reset();
+
+        return start.startsWith("<");
+    }
+
+    private static boolean hasXmlSignature(InputStream in) throws XMLStreamException {
+        var reader = XMLUtils.getSecureXMLInputFactory().createXMLStreamReader(in);
+        try {
+            while (reader.hasNext())
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("Signature")
+                        && XMLDSIG_NS.equals(reader.getNamespaceURI()))
+                    return true;
+
+            return false;
+        } finally {
+            reader.close();
+        }
+    }
+}
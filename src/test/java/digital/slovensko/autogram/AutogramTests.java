@@ -2,13 +2,22 @@ package digital.slovensko.autogram;
 
 import digital.slovensko.autogram.core.*;
 import digital.slovensko.autogram.core.errors.AutogramException;
+import digital.slovensko.autogram.core.errors.SigningCanceledByUserException;
+import digital.slovensko.autogram.core.errors.SigningParametersException;
 import digital.slovensko.autogram.core.visualization.Visualization;
 import digital.slovensko.autogram.drivers.TokenDriver;
 import digital.slovensko.autogram.ui.BatchUiResult;
 import digital.slovensko.autogram.ui.UI;
 import digital.slovensko.autogram.ui.gui.IgnorableException;
+import eu.europa.esig.dss.asic.xades.ASiCWithXAdESContainerExtractor;
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import eu.europa.esig.dss.enumerations.MimeTypeEnum;
 import eu.europa.esig.dss.enumerations.SignatureLevel;
+import eu.europa.esig.dss.enumerations.SignaturePackaging;
+import eu.europa.esig.dss.model.DSSDocument;
+import eu.europa.esig.dss.model.FileDocument;
 import eu.europa.esig.dss.model.InMemoryDocument;
+import eu.europa.esig.dss.model.ToBeSigned;
 import eu.europa.esig.dss.token.AbstractKeyStoreTokenConnection;
 import eu.europa.esig.dss.token.DSSPrivateKeyEntry;
 import eu.europa.esig.dss.token.Pkcs12SignatureToken;
@@ -17,16 +26,28 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.mockito.ArgumentCaptor;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.security.KeyStore;
+import java.time.Duration;
 import java.util.List;
 import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -84,6 +105,143 @@ class AutogramTests {
         verify(responder).onDocumentSigned(any());
     }
 
+    @Test
+    void testSignMultipleDocumentsIntoOneAsice() {
+        var newUI = new FakeUI();
+        var settings = new TestSettings();
+        var autogram = new Autogram(newUI, settings);
+
+        var document = new InMemoryDocument("<a>main</a>".getBytes(), "main.xml", MimeTypeEnum.XML);
+        var attachments = List.<DSSDocument>of(
+                new InMemoryDocument("first".getBytes(), "first.txt", MimeTypeEnum.TEXT),
+                new InMemoryDocument("second".getBytes(), "second.txt", MimeTypeEnum.TEXT));
+        var parameters = SigningParameters.buildForASiCWithXAdES(document, false, null);
+        var responder = mock(Responder.class);
+
+        autogram.pickSigningKeyAndThen(
+                key -> autogram.sign(SigningJob.buildFromRequest(document, attachments, parameters, responder), key));
+
+        var signed = ArgumentCaptor.forClass(SignedDocument.class);
+        verify(responder).onDocumentSigned(signed.capture());
+        var container = new ASiCWithXAdESContainerExtractor(signed.getValue().getDocument()).extract();
+        assertEquals(3, container.getSignedDocuments().size());
+        assertEquals(1, container.getSignatureDocuments().size());
+    }
+
+    @Test
+    void testMultipleDocumentsRequireAsice() {
+        var document = new InMemoryDocument("<a>main</a>".getBytes(), "main.xml", MimeTypeEnum.XML);
+        var attachments = List.<DSSDocument>of(new InMemoryDocument("first".getBytes(), "first.txt", MimeTypeEnum.TEXT));
+        var parameters = SigningParameters.buildFromRequest(SignatureLevel.XAdES_BASELINE_B, null, null,
+                SignaturePackaging.ENVELOPED, DigestAlgorithm.SHA256, false, null, null, null, null, null, null, false,
+                800, false, null, null, null, null, null, document, null);
+
+        assertThrows(SigningParametersException.class,
+                () -> SigningJob.buildFromRequest(document, attachments, parameters, mock(Responder.class)));
+    }
+
+    @Test
+    void testSignPreparedDataSignsOnTokenThread() throws Exception {
+        var scheduler = new WorkScheduler(1, 1);
+        var activeKey = new AtomicReference<SigningKey>();
+        var newUI = new FakeUI() {
+            @Override
+            public Executor getWorkExecutor(WorkScheduler.Kind kind) {
+                return scheduler.executor(kind);
+            }
+
+            @Override
+            public SigningKey getActiveSigningKey() {
+                return activeKey.get();
+            }
+        };
+        var autogram = new Autogram(newUI, new TestSettings());
+        autogram.pickSigningKeyAndThen(activeKey::set);
+
+        var signingThread = new CompletableFuture<String>();
+        try {
+            autogram.signPreparedData(new ToBeSigned("data".getBytes()), DigestAlgorithm.SHA256,
+                    activeKey.get().getCertificate(),
+                    (signatureValue) -> signingThread.complete(Thread.currentThread().getName()),
+                    signingThread::completeExceptionally);
+
+            assertTrue(signingThread.get(10, TimeUnit.SECONDS).startsWith("work-token-"));
+        } finally {
+            scheduler.shutdown(Duration.ofSeconds(1));
+        }
+    }
+
+    @Test
+    void testTokenSessionsAreClosedOnTokenThread() throws Exception {
+        var scheduler = new WorkScheduler(1, 1);
+        var closingThread = new CompletableFuture<String>();
+        var driver = new FakeTokenDriver("fake") {
+            @Override
+            public AbstractKeyStoreTokenConnection createToken(PasswordManager pm, SignatureTokenSettings settings) {
+                var token = spy(super.createToken(pm, settings));
+                doAnswer((invocation) -> {
+                    closingThread.complete(Thread.currentThread().getName());
+                    return null;
+                }).when(token).close();
+                return token;
+            }
+        };
+        var newUI = new FakeUI() {
+            @Override
+            public Executor getWorkExecutor(WorkScheduler.Kind kind) {
+                return scheduler.executor(kind);
+            }
+        };
+        var autogram = new Autogram(newUI, new UserSettings() {
+            @Override
+            public DriverDetector getDriverDetector() {
+                return new FakeDriverDetector(List.of(driver));
+            }
+        });
+        autogram.pickSigningKeyAndThen(SigningKey::close);
+
+        try {
+            autogram.closeTokenSessions(Duration.ofSeconds(5));
+            assertTrue(closingThread.getNow("not closed").startsWith("work-token-"));
+        } finally {
+            scheduler.shutdown(Duration.ofSeconds(1));
+        }
+    }
+
+    @Test
+    void testSpilledFilesAreDeletedAfterJobResponds() {
+        var autogram = new Autogram(new FakeUI(), new TestSettings());
+
+        var content = new byte[33 * 1024 * 1024];
+        new Random(42).nextBytes(content);
+        var document = (FileDocument) DocumentSpill.fromBytes(content, "large.bin", MimeTypeEnum.BINARY);
+        var parameters = SigningParameters.buildForASiCWithXAdES(document, false, null);
+        var responder = mock(Responder.class);
+
+        autogram.pickSigningKeyAndThen(
+                key -> autogram.sign(SigningJob.buildFromRequest(document, parameters, responder), key));
+
+        var signed = ArgumentCaptor.forClass(SignedDocument.class);
+        verify(responder).onDocumentSigned(signed.capture());
+        assertFalse(document.getFile().exists());
+        assertInstanceOf(FileDocument.class, signed.getValue().getDocument());
+        assertFalse(((FileDocument) signed.getValue().getDocument()).getFile().exists());
+    }
+
+    @Test
+    void testSpilledFilesAreDeletedAfterJobFails() {
+        var document = (FileDocument) DocumentSpill.fromBytes(new byte[33 * 1024 * 1024], "large.bin",
+                MimeTypeEnum.BINARY);
+        var parameters = SigningParameters.buildForASiCWithXAdES(document, false, null);
+        var responder = mock(Responder.class);
+        var job = SigningJob.buildFromRequest(document, parameters, responder);
+
+        job.onDocumentSignFailed(new SigningCanceledByUserException());
+
+        verify(responder).onDocumentSignFailed(any());
+        assertFalse(document.getFile().exists());
+    }
+
     @BeforeAll
     public static void setupTempTestDirectory() {
         tempTestsPath.toFile().mkdirs();
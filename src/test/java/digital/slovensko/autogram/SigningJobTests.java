@@ -1,6 +1,8 @@
 package digital.slovensko.autogram;
 
+import digital.slovensko.autogram.core.Responder;
 import digital.slovensko.autogram.core.SigningJob;
+import digital.slovensko.autogram.core.SigningParameters;
 import digital.slovensko.autogram.core.visualization.DocumentVisualizationBuilder;
 import digital.slovensko.autogram.core.visualization.HTMLVisualization;
 import digital.slovensko.autogram.core.visualization.Visualization;
@@ -8,14 +10,21 @@ import digital.slovensko.autogram.server.dto.Document;
 import digital.slovensko.autogram.server.dto.ServerSigningParameters;
 import digital.slovensko.autogram.server.dto.SignRequestBody;
 import digital.slovensko.autogram.server.errors.RequestValidationException;
+import digital.slovensko.autogram.ui.Visualizer;
+import eu.europa.esig.dss.enumerations.MimeTypeEnum;
 import eu.europa.esig.dss.enumerations.SignatureLevel;
+import eu.europa.esig.dss.model.DSSDocument;
+import eu.europa.esig.dss.model.InMemoryDocument;
 
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 public class SigningJobTests {
 
@@ -66,4 +75,21 @@ public class SigningJobTests {
             fail();
         }
     }
+
+    @Test
+    void testAdditionalDocumentsAreExposedForPreview() throws Exception {
+        var document = new InMemoryDocument("<a>main</a>".getBytes(), "main.xml", MimeTypeEnum.XML);
+        var attachment = new InMemoryDocument("first".getBytes(), "first.txt", MimeTypeEnum.TEXT);
+        var parameters = SigningParameters.buildForASiCWithXAdES(document, false, null);
+        var job = SigningJob.buildFromRequest(document, List.of(attachment), parameters, mock(Responder.class));
+
+        assertEquals(List.of("first.txt"), job.getAdditionalDocuments().stream().map(DSSDocument::getName).toList());
+
+        var visualizer = mock(Visualizer.class);
+        DocumentVisualizationBuilder.fromAdditionalDocument(job, job.getAdditionalDocuments().get(0)).initialize(visualizer);
+        verify(visualizer).showPlainTextVisualization("first");
+
+        var other = new InMemoryDocument("other".getBytes(), "other.txt", MimeTypeEnum.TEXT);
+        assertThrows(IllegalArgumentException.class, () -> DocumentVisualizationBuilder.fromAdditionalDocument(job, other));
+    }
 }
@@ -0,0 +1,34 @@
+package digital.slovensko.autogram.core;
+
+import digital.slovensko.autogram.core.errors.BatchConflictException;
+import digital.slovensko.autogram.core.errors.BatchNotStartedException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchRegistryTest {
+    @Test
+    void testSeveralBatchesRunAtOnce() {
+        var registry = new BatchRegistry(2, (batch) -> {});
+        var first = registry.create(1);
+        var second = registry.create(1);
+        first.start(null);
+        second.start(null);
+
+        assertSame(first, registry.get(first.getBatchId()));
+        assertSame(second, registry.get(second.getBatchId()));
+        assertEquals(2, registry.getActiveBatchesCount());
+        assertThrows(BatchConflictException.class, () -> registry.create(1));
+
+        first.end();
+        assertDoesNotThrow(() -> registry.create(1));
+    }
+
+    @Test
+    void testUnknownBatchIsNotFound() {
+        var registry = new BatchRegistry(1, (batch) -> {});
+
+        assertThrows(BatchNotStartedException.class, () -> registry.get("unknown"));
+        assertThrows(BatchNotStartedException.class, () -> registry.get(null));
+    }
+}
@@ -0,0 +1,136 @@
+package digital.slovensko.autogram.core;
+
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchTest {
+    @RepeatedTest(5)
+    void testConcurrentDocumentsAreAllCounted() throws InterruptedException {
+        var documents = 2000;
+        var batch = new Batch(documents);
+        batch.start(null);
+        var batchId = batch.getBatchId();
+        var rejected = new AtomicInteger();
+
+        var executor = Executors.newFixedThreadPool(16);
+        var go = new CountDownLatch(1);
+        // more requests than declared, the extra ones must be rejected
+        for (int i = 0; i < documents + 100; i++) {
+            var index = i;
+            executor.execute(() -> {
+                try {
+                    go.await();
+                    var timing = batch.addJob(batchId);
+                    timing.started();
+                    if (index % 3 == 0)
+                        batch.onJobFailure();
+                    else
+                        batch.onJobSuccess();
+                    timing.finished();
+                } catch (IllegalAccessError e) {
+                    rejected.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        go.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(100, rejected.get());
+        assertEquals(documents, batch.getAddedDocumentsCount());
+        assertEquals(documents, batch.getProcessedDocumentsCount());
+        assertTrue(batch.isAllProcessed());
+        assertNotNull(batch.getThroughputPerSecond());
+    }
+
+    @Test
+    void testDocumentLatencyPercentiles() throws InterruptedException {
+        var batch = new Batch(2);
+        batch.start(null);
+        assertNull(batch.getDocumentLatencyMillis(0.5));
+
+        var fast = batch.addJob(batch.getBatchId());
+        var slow = batch.addJob(batch.getBatchId());
+        fast.finished();
+        Thread.sleep(50);
+        slow.finished();
+
+        assertTrue(batch.getDocumentLatencyMillis(0.5) < 50);
+        assertTrue(batch.getDocumentLatencyMillis(0.95) >= 50);
+    }
+
+    @Test
+    void testDocumentLatencyIsOverRecentDocuments() throws InterruptedException {
+        var batch = new Batch(null);
+        batch.start(null);
+
+        var slow = batch.addJob(batch.getBatchId());
+        Thread.sleep(50);
+        slow.finished();
+        assertTrue(batch.getDocumentLatencyMillis(1) >= 50);
+
+        for (int i = 0; i < Batch.LATENCY_WINDOW; i++)
+            batch.addJob(batch.getBatchId()).finished();
+
+        assertTrue(batch.getDocumentLatencyMillis(1) < 50);
+        assertNotNull(batch.getThroughputPerSecond());
+    }
+
+    @Test
+    void testStatusIsReadableAfterEnd() {
+        var batch = new Batch(1);
+        batch.start(null);
+        var batchId = batch.getBatchId();
+        batch.end();
+
+        assertDoesNotThrow(() -> batch.validateId(batchId));
+        assertEquals("ENDED", batch.getState());
+    }
+
+    @Test
+    void testOpenEndedBatchAcceptsDocumentsUntilEnded() {
+        var batch = new Batch(null);
+        batch.start(null);
+        var batchId = batch.getBatchId();
+
+        for (int i = 0; i < 5; i++) {
+            batch.addJob(batchId).finished();
+            batch.onJobSuccess();
+        }
+
+        assertTrue(batch.isOpenEnded());
+        assertEquals(5, batch.getTotalNumberOfDocuments());
+        assertFalse(batch.isAllProcessed());
+
+        batch.end();
+        assertTrue(batch.isAllProcessed());
+    }
+
+    @Test
+    void testBatchDoesNotExpireWhileDocumentsAreInFlight() {
+        var batch = new Batch(null);
+        batch.start(null);
+        var afterIdleTimeout = new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(365));
+
+        var queued = batch.addJob(batch.getBatchId());
+        assertFalse(batch.isExpired(afterIdleTimeout));
+
+        queued.started();
+        assertFalse(batch.isExpired(afterIdleTimeout));
+
+        queued.finished();
+        assertTrue(batch.isExpired(afterIdleTimeout));
+        assertFalse(batch.isExpired());
+    }
+}
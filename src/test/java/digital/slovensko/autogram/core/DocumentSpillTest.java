@@ -0,0 +1,100 @@
+package digital.slovensko.autogram.core;
+
+import eu.europa.esig.dss.enumerations.MimeTypeEnum;
+import eu.europa.esig.dss.model.FileDocument;
+import eu.europa.esig.dss.model.InMemoryDocument;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DocumentSpillTest {
+    private static final int LARGE = 33 * 1024 * 1024;
+
+    @Test
+    void testSmallDocumentStaysInMemory() {
+        var document = DocumentSpill.fromBytes(new byte[]{1, 2, 3}, "small.pdf", MimeTypeEnum.PDF);
+
+        assertInstanceOf(InMemoryDocument.class, document);
+    }
+
+    @Test
+    void testLargeDocumentIsSpilledToFile() throws IOException {
+        var content = randomBytes(LARGE);
+        var document = DocumentSpill.fromBytes(content, "large.pdf", MimeTypeEnum.PDF);
+
+        assertInstanceOf(FileDocument.class, document);
+        assertEquals("large.pdf", document.getName());
+        assertEquals(MimeTypeEnum.PDF, document.getMimeType());
+        try (var in = document.openStream()) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void testLargeBase64IsDecodedIntoFile() throws IOException {
+        var content = randomBytes(LARGE);
+        var document = DocumentSpill.fromBase64(Base64.getEncoder().encodeToString(content), "large.pdf",
+                MimeTypeEnum.PDF);
+
+        assertInstanceOf(FileDocument.class, document);
+        try (var in = document.openStream()) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void testInvalidLargeBase64IsRejected() {
+        var content = "A".repeat(LARGE / 3 * 4) + "%%%%";
+
+        assertThrows(IllegalArgumentException.class, () -> DocumentSpill.fromBase64(content, "large.pdf",
+                MimeTypeEnum.PDF));
+    }
+
+    @Test
+    void testSignedDocumentIsSpilled() {
+        var document = new InMemoryDocument(new byte[LARGE], "signed.asice", MimeTypeEnum.ASICE);
+
+        var small = new InMemoryDocument(new byte[1], "signed.pdf", MimeTypeEnum.PDF);
+
+        assertInstanceOf(FileDocument.class, DocumentSpill.spill(document));
+        assertSame(small, DocumentSpill.spill(small));
+    }
+
+    @Test
+    void testLargeUploadIsStreamedIntoFile() throws IOException {
+        var content = randomBytes(LARGE);
+        var out = DocumentSpill.newOutputStream();
+        for (int i = 0; i < content.length; i += 8192)
+            out.write(content, i, Math.min(8192, content.length - i));
+
+        var document = out.toDocument("large.pdf");
+
+        assertInstanceOf(FileDocument.class, document);
+        assertEquals("large.pdf", document.getName());
+        try (var in = document.openStream()) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+        DocumentSpill.discard(document);
+    }
+
+    @Test
+    void testSmallUploadStaysInMemory() throws IOException {
+        var out = DocumentSpill.newOutputStream();
+        out.write(new byte[]{1, 2, 3});
+
+        var document = out.toDocument("small.pdf");
+
+        assertInstanceOf(InMemoryDocument.class, document);
+        assertArrayEquals(new byte[]{1, 2, 3}, ((InMemoryDocument) document).getBytes());
+    }
+
+    private static byte[] randomBytes(int size) {
+        var bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+}
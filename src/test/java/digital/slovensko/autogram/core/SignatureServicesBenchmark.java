@@ -0,0 +1,136 @@
+package digital.slovensko.autogram.core;
+
+import eu.europa.esig.dss.AbstractSignatureParameters;
+import eu.europa.esig.dss.asic.cades.ASiCWithCAdESSignatureParameters;
+import eu.europa.esig.dss.asic.cades.signature.ASiCWithCAdESService;
+import eu.europa.esig.dss.asic.xades.ASiCWithXAdESSignatureParameters;
+import eu.europa.esig.dss.asic.xades.signature.ASiCWithXAdESService;
+import eu.europa.esig.dss.cades.CAdESSignatureParameters;
+import eu.europa.esig.dss.cades.signature.CAdESService;
+import eu.europa.esig.dss.enumerations.ASiCContainerType;
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import eu.europa.esig.dss.enumerations.MimeTypeEnum;
+import eu.europa.esig.dss.enumerations.SignatureLevel;
+import eu.europa.esig.dss.enumerations.SignaturePackaging;
+import eu.europa.esig.dss.model.DSSDocument;
+import eu.europa.esig.dss.model.InMemoryDocument;
+import eu.europa.esig.dss.pades.PAdESSignatureParameters;
+import eu.europa.esig.dss.pades.signature.PAdESService;
+import eu.europa.esig.dss.signature.DocumentSignatureService;
+import eu.europa.esig.dss.token.DSSPrivateKeyEntry;
+import eu.europa.esig.dss.token.Pkcs12SignatureToken;
+import eu.europa.esig.dss.validation.CommonCertificateVerifier;
+import eu.europa.esig.dss.xades.XAdESSignatureParameters;
+import eu.europa.esig.dss.xades.signature.XAdESService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.io.IOException;
+import java.security.KeyStore;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Compares creating DSS services per signing job with shared SignatureServices, results are published as test
+ * report entries.
+ *
+ * Run with: ./mvnw test -P benchmark
+ */
+@Tag("Benchmark")
+class SignatureServicesBenchmark {
+    private static final int WARMUP_ITERATIONS = 50;
+    private static final int ITERATIONS = 500;
+
+    private static DSSPrivateKeyEntry key;
+    private static DSSDocument pdf;
+    private static DSSDocument txt;
+
+    private record Format(String name, DSSDocument document, Supplier<AbstractSignatureParameters<?>> parameters,
+            Function<CommonCertificateVerifier, DocumentSignatureService<?, ?>> perJobService,
+            Supplier<DocumentSignatureService<?, ?>> sharedService) {
+    }
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        var keystore = Objects.requireNonNull(SignatureServicesBenchmark.class
+                .getResource("/digital/slovensko/autogram/test.keystore")).getFile();
+        var token = new Pkcs12SignatureToken(keystore, new KeyStore.PasswordProtection("".toCharArray()));
+        key = token.getKeys().get(0);
+
+        var cls = SignatureServicesBenchmark.class;
+        pdf = new InMemoryDocument(cls.getResourceAsStream("/digital/slovensko/autogram/sample.pdf").readAllBytes(),
+                "sample.pdf", MimeTypeEnum.PDF);
+        txt = new InMemoryDocument(cls.getResourceAsStream("/digital/slovensko/autogram/sample.txt").readAllBytes(),
+                "sample.txt", MimeTypeEnum.TEXT);
+    }
+
+    @Test
+    void benchmarkPerJobAndSharedServices(TestReporter reporter) {
+        var shared = SignatureServices.forTspSource(null);
+        var formats = List.of(
+                new Format("XAdES", txt, () -> {
+                    var p = new XAdESSignatureParameters();
+                    p.setSignatureLevel(SignatureLevel.XAdES_BASELINE_B);
+                    p.setSignaturePackaging(SignaturePackaging.ENVELOPING);
+                    return p;
+                }, XAdESService::new, shared::getXAdESService),
+                new Format("CAdES", pdf, () -> {
+                    var p = new CAdESSignatureParameters();
+                    p.setSignatureLevel(SignatureLevel.CAdES_BASELINE_B);
+                    p.setSignaturePackaging(SignaturePackaging.ENVELOPING);
+                    return p;
+                }, CAdESService::new, shared::getCAdESService),
+                new Format("PAdES", pdf, () -> {
+                    var p = new PAdESSignatureParameters();
+                    p.setSignatureLevel(SignatureLevel.PAdES_BASELINE_B);
+                    return p;
+                }, PAdESService::new, () -> shared.getPAdESService(SignatureLevel.PAdES_BASELINE_B)),
+                new Format("ASiC-E XAdES", pdf, () -> {
+                    var p = new ASiCWithXAdESSignatureParameters();
+                    p.setSignatureLevel(SignatureLevel.XAdES_BASELINE_B);
+                    p.aSiC().setContainerType(ASiCContainerType.ASiC_E);
+                    return p;
+                }, ASiCWithXAdESService::new, () -> shared.getASiCWithXAdESService(SignatureLevel.XAdES_BASELINE_B)),
+                new Format("ASiC-E CAdES", pdf, () -> {
+                    var p = new ASiCWithCAdESSignatureParameters();
+                    p.setSignatureLevel(SignatureLevel.CAdES_BASELINE_B);
+                    p.aSiC().setContainerType(ASiCContainerType.ASiC_E);
+                    return p;
+                }, ASiCWithCAdESService::new, shared::getASiCWithCAdESService));
+
+        for (var format : formats) {
+            var perJob = measure(format, () -> format.perJobService().apply(new CommonCertificateVerifier()));
+            var reused = measure(format, format.sharedService());
+
+            reporter.publishEntry(format.name(),
+                    String.format("per-job %8.3f ms/op, shared %8.3f ms/op", perJob, reused));
+        }
+    }
+
+    private static double measure(Format format, Supplier<DocumentSignatureService<?, ?>> serviceSupplier) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++)
+            getDataToSign(format, serviceSupplier.get());
+
+        var start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            getDataToSign(format, serviceSupplier.get());
+
+        return (System.nanoTime() - start) / 1e6 / ITERATIONS;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void getDataToSign(Format format, DocumentSignatureService service) {
+        var parameters = format.parameters().get();
+        parameters.setDigestAlgorithm(DigestAlgorithm.SHA256);
+        parameters.setSigningCertificate(key.getCertificate());
+        parameters.setCertificateChain(key.getCertificateChain());
+
+        assertNotNull(service.getDataToSign(format.document(), parameters));
+    }
+}
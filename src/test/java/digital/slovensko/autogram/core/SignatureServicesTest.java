@@ -0,0 +1,37 @@
+package digital.slovensko.autogram.core;
+
+import eu.europa.esig.dss.enumerations.SignatureLevel;
+import eu.europa.esig.dss.spi.x509.tsp.TSPSource;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class SignatureServicesTest {
+    @Test
+    void testOnlyTimestampedLevelsDependOnTspSource() {
+        var withoutTsp = SignatureServices.forTspSource(null);
+        var withTsp = SignatureServices.forTspSource(mock(TSPSource.class));
+
+        assertSame(withoutTsp.getPAdESService(SignatureLevel.PAdES_BASELINE_B),
+                withTsp.getPAdESService(SignatureLevel.PAdES_BASELINE_B));
+        assertSame(withoutTsp.getASiCWithXAdESService(SignatureLevel.XAdES_BASELINE_B),
+                withTsp.getASiCWithXAdESService(SignatureLevel.XAdES_BASELINE_B));
+        assertSame(withoutTsp.getXAdESService(), withTsp.getXAdESService());
+        assertSame(withoutTsp.getCAdESService(), withTsp.getCAdESService());
+        assertSame(withoutTsp.getASiCWithCAdESService(), withTsp.getASiCWithCAdESService());
+
+        assertNotSame(withTsp.getPAdESService(SignatureLevel.PAdES_BASELINE_T),
+                withTsp.getPAdESService(SignatureLevel.PAdES_BASELINE_B));
+        assertNotSame(withTsp.getASiCWithXAdESService(SignatureLevel.XAdES_BASELINE_T),
+                withTsp.getASiCWithXAdESService(SignatureLevel.XAdES_BASELINE_B));
+    }
+
+    @Test
+    void testServicesAreReusedForSameTspSource() {
+        var tspSource = mock(TSPSource.class);
+
+        assertSame(SignatureServices.forTspSource(tspSource).getPAdESService(SignatureLevel.PAdES_BASELINE_T),
+                SignatureServices.forTspSource(tspSource).getPAdESService(SignatureLevel.PAdES_BASELINE_T));
+    }
+}
@@ -0,0 +1,137 @@
+package digital.slovensko.autogram.core;
+
+import digital.slovensko.autogram.core.errors.AutogramException;
+import digital.slovensko.autogram.drivers.FakeTokenDriver;
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import eu.europa.esig.dss.model.InMemoryDocument;
+import eu.europa.esig.dss.model.SignatureValue;
+import eu.europa.esig.dss.model.ToBeSigned;
+import eu.europa.esig.dss.token.AbstractKeyStoreTokenConnection;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Sequential and pipelined signing with keys of the FakeTokenDriver, results are published as test report entries.
+ *
+ * Run with: ./mvnw test -P benchmark
+ */
+@Tag("Benchmark")
+class SigningPipelineBenchmark {
+    private final WorkScheduler workScheduler = new WorkScheduler(1, 1);
+
+    /**
+     * Card latency is simulated by sleeping in the token stage.
+     */
+    @Test
+    void benchmarkSequentialAndPipelinedSigning(TestReporter reporter) throws Exception {
+        var documents = 50;
+        var cardLatencyMillis = 30;
+        var tokenBusyNanos = new AtomicLong();
+
+        var token = createFakeToken();
+        var key = new SigningKey(token, token.getKeys().get(0)) {
+            @Override
+            public SignatureValue sign(ToBeSigned dataToSign, DigestAlgorithm algo) {
+                var start = System.nanoTime();
+                try {
+                    Thread.sleep(cardLatencyMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                var signatureValue = super.sign(dataToSign, algo);
+                tokenBusyNanos.addAndGet(System.nanoTime() - start);
+                return signatureValue;
+            }
+
+            @Override
+            public boolean supportsConcurrentSigning() {
+                return false; // behave like a card
+            }
+        };
+
+        var jobs = createJobs(documents * 2);
+
+        var start = System.nanoTime();
+        for (var job : jobs.subList(0, documents))
+            job.signWithKeyAndRespond(key);
+        var sequentialNanos = System.nanoTime() - start;
+        var sequentialTokenNanos = tokenBusyNanos.getAndSet(0);
+
+        var pipeline = new SigningPipeline(2, 2, 4, workScheduler.executor(WorkScheduler.Kind.TOKEN));
+        start = System.nanoTime();
+        var futures = jobs.subList(documents, documents * 2).stream().map((job) -> pipeline.submit(job, key)).toList();
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        var pipelinedNanos = System.nanoTime() - start;
+        pipeline.shutdown();
+
+        reporter.publishEntry("sequential", String.format("%6.1f docs/s, token utilization %3.0f%%",
+                documents / (sequentialNanos / 1e9), 100.0 * sequentialTokenNanos / sequentialNanos));
+        reporter.publishEntry("pipelined", String.format("%6.1f docs/s, token utilization %3.0f%%",
+                documents / (pipelinedNanos / 1e9), 100.0 * tokenBusyNanos.get() / pipelinedNanos));
+    }
+
+    /**
+     * Throughput of a software keystore key from one thread up to one per CPU core.
+     */
+    @Test
+    void benchmarkSoftwareKeyScaling(TestReporter reporter) throws Exception {
+        var documents = 200;
+        var token = createFakeToken();
+        var key = new SigningKey(token, token.getKeys().get(0));
+        assertTrue(key.supportsConcurrentSigning());
+
+        var maxThreads = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+            var jobs = createJobs(documents);
+
+            var pipeline = new SigningPipeline(threads, threads, threads * 2, threads,
+                    workScheduler.executor(WorkScheduler.Kind.TOKEN));
+            var start = System.nanoTime();
+            var futures = jobs.stream().map((job) -> pipeline.submit(job, key)).toList();
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+            var nanos = System.nanoTime() - start;
+            pipeline.shutdown();
+
+            reporter.publishEntry(threads + " threads", String.format("%6.1f docs/s", documents / (nanos / 1e9)));
+            if (threads == maxThreads)
+                break;
+        }
+    }
+
+    private static AbstractKeyStoreTokenConnection createFakeToken() {
+        return new FakeTokenDriver("fake", null, "fake", "").createToken(null, null);
+    }
+
+    private List<SigningJob> createJobs(int count) throws IOException {
+        var pdf = Objects.requireNonNull(getClass().getResourceAsStream("/digital/slovensko/autogram/sample.pdf"))
+                .readAllBytes();
+        var responder = new Responder() {
+            public void onDocumentSigned(SignedDocument signedDocument) {
+            }
+
+            public void onDocumentSignFailed(AutogramException error) {
+                throw error;
+            }
+        };
+
+        var jobs = new ArrayList<SigningJob>();
+        for (int i = 0; i < count; i++) {
+            var document = new InMemoryDocument(pdf, "sample-" + i + ".pdf");
+            jobs.add(SigningJob.buildFromRequest(document,
+                    SigningParameters.buildForASiCWithXAdES(document, false, null), responder));
+        }
+
+        return jobs;
+    }
+}
@@ -0,0 +1,177 @@
+package digital.slovensko.autogram.core;
+
+import digital.slovensko.autogram.core.errors.AutogramException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class SigningPipelineTest {
+    private final WorkScheduler workScheduler = new WorkScheduler(1, 1);
+    private final Executor tokenExecutor = workScheduler.executor(WorkScheduler.Kind.TOKEN);
+
+    @Test
+    void testTokenStageIsSerialized() {
+        var pipeline = new SigningPipeline(4, 4, 2, tokenExecutor);
+        var signing = new AtomicInteger();
+        var maxConcurrentSigning = new AtomicInteger();
+        var finished = new AtomicInteger();
+        var signingThreads = new ConcurrentLinkedQueue<String>();
+
+        var futures = new ArrayList<CompletableFuture<Void>>();
+        for (int i = 0; i < 20; i++) {
+            var prepared = mock(SigningJob.PreparedSignature.class);
+            doAnswer((invocation) -> {
+                maxConcurrentSigning.accumulateAndGet(signing.incrementAndGet(), Math::max);
+                signingThreads.add(Thread.currentThread().getName());
+                Thread.sleep(5);
+                signing.decrementAndGet();
+                return null;
+            }).when(prepared).sign();
+            doAnswer((invocation) -> finished.incrementAndGet()).when(prepared).finishAndRespond();
+
+            var job = mock(SigningJob.class);
+            when(job.prepare(any())).thenReturn(prepared);
+            futures.add(pipeline.submit(job, null));
+        }
+
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).orTimeout(10, TimeUnit.SECONDS).join();
+        pipeline.shutdown();
+
+        assertEquals(1, maxConcurrentSigning.get());
+        assertEquals(20, finished.get());
+        assertTrue(signingThreads.stream().allMatch((name) -> name.startsWith("work-token-")),
+                "Token stage must run on the shared TOKEN work thread");
+    }
+
+    @Test
+    void testFailedStageCompletesFutureExceptionally() {
+        var pipeline = new SigningPipeline(1, 1, 1, tokenExecutor);
+        var prepared = mock(SigningJob.PreparedSignature.class);
+        doThrow(new AutogramException("Token failed", "", "")).when(prepared).sign();
+        var job = mock(SigningJob.class);
+        when(job.prepare(any())).thenReturn(prepared);
+
+        var e = assertThrows(CompletionException.class, () -> pipeline.submit(job, null).join());
+        pipeline.shutdown();
+
+        assertInstanceOf(AutogramException.class, e.getCause());
+        verify(prepared, never()).finishAndRespond();
+    }
+
+    @Test
+    void testSoftwareKeySignsInParallel() {
+        var pipeline = new SigningPipeline(2, 2, 2, 2, tokenExecutor);
+        var key = mock(SigningKey.class);
+        when(key.supportsConcurrentSigning()).thenReturn(true);
+        var bothSigning = new CountDownLatch(2);
+        var signedConcurrently = new AtomicInteger();
+
+        var futures = new ArrayList<CompletableFuture<Void>>();
+        for (int i = 0; i < 2; i++) {
+            var prepared = mock(SigningJob.PreparedSignature.class);
+            doAnswer((invocation) -> {
+                bothSigning.countDown();
+                if (bothSigning.await(5, TimeUnit.SECONDS))
+                    signedConcurrently.incrementAndGet();
+                return null;
+            }).when(prepared).sign();
+
+            var job = mock(SigningJob.class);
+            when(job.prepare(key)).thenReturn(prepared);
+            futures.add(pipeline.submit(job, key));
+        }
+
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).orTimeout(10, TimeUnit.SECONDS).join();
+        pipeline.shutdown();
+
+        assertEquals(2, signedConcurrently.get());
+    }
+
+    @Test
+    void testSlowFinalizationDoesNotHoldTokenThread() throws Exception {
+        var pipeline = new SigningPipeline(1, 1, 1, tokenExecutor);
+        var finishStarted = new CountDownLatch(1);
+        var finishing = new CountDownLatch(1);
+        var futures = new ConcurrentLinkedQueue<CompletableFuture<Void>>();
+
+        // more documents than the queues hold, submitting blocks until they move on
+        var submitter = Executors.newSingleThreadExecutor();
+        submitter.execute(() -> {
+            for (int i = 0; i < 6; i++) {
+                var prepared = mock(SigningJob.PreparedSignature.class);
+                doAnswer((invocation) -> {
+                    finishStarted.countDown();
+                    finishing.await(10, TimeUnit.SECONDS);
+                    return null;
+                }).when(prepared).finishAndRespond();
+
+                var job = mock(SigningJob.class);
+                when(job.prepare(any())).thenReturn(prepared);
+                futures.add(pipeline.submit(job, null));
+            }
+        });
+
+        assertTrue(finishStarted.await(5, TimeUnit.SECONDS));
+        var single = mock(SigningJob.class);
+        CompletableFuture.runAsync(() -> single.signWithKeyAndRespond(null), tokenExecutor).get(5, TimeUnit.SECONDS);
+        verify(single).signWithKeyAndRespond(null);
+
+        finishing.countDown();
+        submitter.shutdown();
+        assertTrue(submitter.awaitTermination(5, TimeUnit.SECONDS));
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).orTimeout(10, TimeUnit.SECONDS).join();
+        pipeline.shutdown();
+
+        assertEquals(6, futures.size());
+    }
+
+    @Test
+    void testTokenStageTakesLanesRoundRobin() throws InterruptedException {
+        var stage = new SigningPipeline.FairTokenStage(10, new Semaphore(10), tokenExecutor);
+        var blocker = new CountDownLatch(1);
+        var done = new CountDownLatch(6);
+        var order = new ConcurrentLinkedQueue<String>();
+
+        stage.execute("blocker", () -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        for (int i = 1; i <= 3; i++) {
+            var index = i;
+            stage.execute("a", () -> {
+                order.add("a" + index);
+                done.countDown();
+            });
+        }
+        for (int i = 1; i <= 3; i++) {
+            var index = i;
+            stage.execute("b", () -> {
+                order.add("b" + index);
+                done.countDown();
+            });
+        }
+
+        blocker.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        stage.shutdown();
+
+        assertEquals(List.of("a1", "b1", "a2", "b2", "a3", "b3"), List.copyOf(order));
+    }
+}
@@ -0,0 +1,104 @@
+package digital.slovensko.autogram.core;
+
+import digital.slovensko.autogram.drivers.TokenDriver;
+import eu.europa.esig.dss.token.AbstractKeyStoreTokenConnection;
+import eu.europa.esig.dss.token.DSSPrivateKeyEntry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TokenSessionCacheTest {
+    private final SignatureTokenSettings settings = mock(SignatureTokenSettings.class);
+
+    @Test
+    void testSessionIsReusedWithKeysListedOnce() {
+        var driver = createDriver();
+        var cache = new TokenSessionCache(Duration.ofMinutes(5));
+
+        var first = cache.open(driver, null, settings);
+        first.getKeys();
+        first.createSigningKey(mock(DSSPrivateKeyEntry.class)).close();
+        var second = cache.open(driver, null, settings);
+        second.getKeys();
+
+        assertSame(first, second);
+        verify(driver, times(1)).createToken(any(), any());
+        verify(first.getToken(), times(1)).getKeys();
+        verify(first.getToken(), never()).close();
+    }
+
+    @Test
+    void testIdleSessionIsClosedButNotOneInUse() {
+        var driver = createDriver();
+        var cache = new TokenSessionCache(Duration.ZERO);
+
+        var session = cache.open(driver, null, settings);
+        var key = session.createSigningKey(mock(DSSPrivateKeyEntry.class));
+        cache.evictIdle();
+        verify(session.getToken(), never()).close();
+
+        key.close();
+        cache.evictIdle();
+        verify(session.getToken()).close();
+    }
+
+    @Test
+    void testReusedSessionIsNotClosedWhileKeyIsPicked() throws InterruptedException {
+        var driver = createDriver();
+        var cache = new TokenSessionCache(Duration.ofMillis(500));
+
+        var first = cache.open(driver, null, settings);
+        first.createSigningKey(mock(DSSPrivateKeyEntry.class)).close();
+        Thread.sleep(300);
+        var second = cache.open(driver, null, settings);
+        Thread.sleep(300);
+        cache.evictIdle();
+
+        assertSame(first, second);
+        verify(second.getToken(), never()).close();
+    }
+
+    @Test
+    void testRemovedTokenIsOpenedAgain() {
+        var driver = createDriver();
+        var cache = new TokenSessionCache(Duration.ofMinutes(5));
+
+        var first = cache.open(driver, null, settings);
+        when(driver.isTokenPresent(first.getToken())).thenReturn(false);
+        var second = cache.open(driver, null, settings);
+
+        assertNotSame(first, second);
+        verify(first.getToken()).close();
+    }
+
+    @Test
+    void testInvalidatedSessionIsClosed() {
+        var driver = createDriver();
+        var cache = new TokenSessionCache(Duration.ofMinutes(5));
+
+        var first = cache.open(driver, null, settings);
+        cache.invalidate(first.getToken());
+
+        verify(first.getToken()).close();
+        assertNotSame(first, cache.open(driver, null, settings));
+    }
+
+    private static TokenDriver createDriver() {
+        var driver = mock(TokenDriver.class);
+        when(driver.getPath()).thenReturn(Path.of("/usr/lib/token.so"));
+        when(driver.isTokenPresent(any())).thenReturn(true);
+        when(driver.createToken(any(), any())).thenAnswer((invocation) -> {
+            var token = mock(AbstractKeyStoreTokenConnection.class);
+            when(token.getKeys()).thenReturn(List.of());
+            return token;
+        });
+
+        return driver;
+    }
+}
@@ -0,0 +1,81 @@
+package digital.slovensko.autogram.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkSchedulerTest {
+    private final WorkScheduler scheduler = new WorkScheduler(2, 2);
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        scheduler.shutdown(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void testExecuteAndWaitRunsOnNamedWorkerThread() {
+        var threadName = new AtomicReference<String>();
+
+        scheduler.executeAndWait(WorkScheduler.Kind.TOKEN, () -> threadName.set(Thread.currentThread().getName()));
+
+        assertEquals("work-token-1", threadName.get());
+        assertFalse(WorkScheduler.isWorkerThread());
+    }
+
+    @Test
+    void testNestedExecuteAndWaitRunsInline() {
+        var outer = new AtomicReference<Thread>();
+        var inner = new AtomicReference<Thread>();
+
+        scheduler.executeAndWait(WorkScheduler.Kind.TOKEN, () -> {
+            outer.set(Thread.currentThread());
+            scheduler.executeAndWait(WorkScheduler.Kind.TOKEN, () -> inner.set(Thread.currentThread()));
+        });
+
+        assertSame(outer.get(), inner.get());
+    }
+
+    @Test
+    void testExecuteAndWaitFromOtherPoolRunsOnItsPool() {
+        var threadName = new AtomicReference<String>();
+
+        scheduler.executeAndWait(WorkScheduler.Kind.CPU, () -> scheduler.executeAndWait(WorkScheduler.Kind.TOKEN,
+                () -> threadName.set(Thread.currentThread().getName())));
+
+        assertEquals("work-token-1", threadName.get());
+    }
+
+    @Test
+    void testExecuteAndWaitRethrowsRuntimeException() {
+        assertThrows(IllegalStateException.class, () -> scheduler.executeAndWait(WorkScheduler.Kind.CPU, () -> {
+            throw new IllegalStateException();
+        }));
+    }
+
+    @Test
+    void testRejectsTasksOverQueueCapacity() throws InterruptedException {
+        var bounded = new WorkScheduler(1, 1, 1);
+        var blocker = new CountDownLatch(1);
+        try {
+            bounded.execute(WorkScheduler.Kind.TOKEN, () -> {
+                try {
+                    blocker.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            bounded.execute(WorkScheduler.Kind.TOKEN, () -> {});
+
+            assertThrows(RejectedExecutionException.class, () -> bounded.execute(WorkScheduler.Kind.TOKEN, () -> {}));
+        } finally {
+            blocker.countDown();
+            bounded.shutdown(Duration.ofSeconds(1));
+        }
+    }
+}
@@ -3,8 +3,12 @@ package digital.slovensko.autogram.core.eforms;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
 
 import eu.europa.esig.dss.model.DSSDocument;
+import eu.europa.esig.dss.model.InMemoryDocument;
+
+import java.io.IOException;
 
 public class XDCValidatorTests {
     @ParameterizedTest
@@ -19,4 +23,19 @@ public class XDCValidatorTests {
     void testReturnsFalseForAllNonXDCsRegerdlessOfMimeType(DSSDocument document) {
         Assertions.assertFalse(XDCValidator.isXDCContent(document));
     }
+
+    @ParameterizedTest
+    @MethodSource({"digital.slovensko.autogram.TestMethodSources#xdcDocumentsProvider",
+            "digital.slovensko.autogram.TestMethodSources#xdcDocumentsWithXmlMimetypeProvider"})
+    void testFindsXDCRootElementInAllXDCs(DSSDocument document) {
+        Assertions.assertTrue(XDCValidator.hasXDCRootElement(document));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"general_agenda.xml", "non_eform.xml", "empty_xml.xml", "sample.pdf"})
+    void testDoesNotFindXDCRootElementInOtherDocuments(String filename) throws IOException {
+        var content = getClass().getResourceAsStream("/digital/slovensko/autogram/" + filename).readAllBytes();
+
+        Assertions.assertFalse(XDCValidator.hasXDCRootElement(new InMemoryDocument(content, filename)));
+    }
 }
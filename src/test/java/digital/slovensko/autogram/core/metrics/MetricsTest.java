@@ -0,0 +1,33 @@
+package digital.slovensko.autogram.core.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsTest {
+    @Test
+    void testSameNameAndLabelsReturnSameMetric() {
+        var counter = Metrics.counter("metrics_test_total", "Test counter", "label", "a");
+
+        assertSame(counter, Metrics.counter("metrics_test_total", "Test counter", "label", "a"));
+        assertNotSame(counter, Metrics.counter("metrics_test_total", "Test counter", "label", "b"));
+        assertThrows(IllegalArgumentException.class, () -> Metrics.histogram("metrics_test_total", "Test counter"));
+    }
+
+    @Test
+    void testHistogramIsWrittenInTextFormat() {
+        var histogram = Metrics.histogram("metrics_test_seconds", "Test histogram", "phase", "sign");
+        histogram.observeNanos(3_000_000);
+        histogram.observeNanos(400_000_000_000L);
+
+        var out = new StringBuilder();
+        Metrics.writeTo(out);
+        var text = out.toString();
+
+        assertTrue(text.contains("# TYPE metrics_test_seconds histogram\n"));
+        assertTrue(text.contains("metrics_test_seconds_bucket{phase=\"sign\",le=\"0.005\"} 1\n"));
+        assertTrue(text.contains("metrics_test_seconds_bucket{phase=\"sign\",le=\"300.0\"} 1\n"));
+        assertTrue(text.contains("metrics_test_seconds_bucket{phase=\"sign\",le=\"+Inf\"} 2\n"));
+        assertTrue(text.contains("metrics_test_seconds_count{phase=\"sign\"} 2\n"));
+    }
+}
@@ -0,0 +1,167 @@
+package digital.slovensko.autogram.core.tsp;
+
+import com.sun.net.httpserver.HttpServer;
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import eu.europa.esig.dss.model.TimestampBinary;
+import eu.europa.esig.dss.spi.exception.DSSExternalResourceException;
+import eu.europa.esig.dss.spi.x509.tsp.TSPSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HedgedTSPSourceTest {
+    private final HttpTimestampDataLoader dataLoader = new HttpTimestampDataLoader(Duration.ofSeconds(1),
+            Duration.ofSeconds(5));
+    private final List<HttpServer> servers = new ArrayList<>();
+
+    @AfterEach
+    void stopServers() {
+        servers.forEach((server) -> server.stop(0));
+    }
+
+    @Test
+    void testFastPrimaryIsNotHedged() throws IOException {
+        var alternateRequests = new AtomicInteger();
+        var source = new HedgedTSPSource(startTsa("primary", 0, 200, null), startTsa("alternate", 0, 200, alternateRequests),
+                Duration.ofSeconds(2), Duration.ZERO);
+
+        assertEquals("primary", requestTimestamp(source));
+        assertEquals(0, alternateRequests.get());
+    }
+
+    @Test
+    void testSlowPrimaryIsHedged() throws IOException {
+        var source = new HedgedTSPSource(startTsa("primary", 3000, 200, null), startTsa("alternate", 0, 200, null),
+                Duration.ofMillis(100), Duration.ZERO);
+
+        var start = System.nanoTime();
+        assertEquals("alternate", requestTimestamp(source));
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(2)) < 0);
+    }
+
+    @Test
+    void testLosingRequestIsCancelled() throws Exception {
+        var cancelled = new CountDownLatch(1);
+        TSPSource slowPrimary = (digestAlgorithm, digest) -> {
+            try {
+                Thread.sleep(10_000);
+                return new TimestampBinary("primary".getBytes());
+            } catch (InterruptedException e) {
+                cancelled.countDown();
+                throw new DSSExternalResourceException("Timestamp request was interrupted", e);
+            }
+        };
+
+        try (var source = new HedgedTSPSource(slowPrimary, startTsa("alternate", 0, 200, null), Duration.ofMillis(100),
+                Duration.ZERO)) {
+            assertEquals("alternate", requestTimestamp(source));
+            assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void testFailedPrimaryFallsBackToAlternate() throws IOException {
+        var source = new HedgedTSPSource(startTsa("primary", 0, 500, null), startTsa("alternate", 0, 200, null),
+                Duration.ofSeconds(2), Duration.ZERO);
+
+        assertEquals("alternate", requestTimestamp(source));
+    }
+
+    @Test
+    void testBothFailedThrowsPrimaryError() throws IOException {
+        var source = new HedgedTSPSource(startTsa("primary", 0, 500, null), startTsa("alternate", 0, 503, null),
+                Duration.ofSeconds(2), Duration.ZERO);
+
+        var e = assertThrows(DSSExternalResourceException.class, () -> requestTimestamp(source));
+        assertTrue(e.getMessage().contains("HTTP 500"));
+    }
+
+    @Test
+    void testTimestampQueryIsPosted() throws IOException {
+        var contentType = new AtomicReference<String>();
+        var server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", (exchange) -> {
+            contentType.set(exchange.getRequestHeaders().getFirst("Content-Type"));
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        servers.add(server);
+
+        dataLoader.post("http://127.0.0.1:" + server.getAddress().getPort() + "/", new byte[]{1});
+
+        assertEquals("application/timestamp-query", contentType.get());
+    }
+
+    @Test
+    void testHedgeDelayFollowsPrimaryLatency() {
+        var source = new HedgedTSPSource((digestAlgorithm, digest) -> new TimestampBinary(new byte[]{1}),
+                null, Duration.ofSeconds(2), Duration.ofMillis(1));
+
+        assertEquals(Duration.ofSeconds(2), source.getHedgeDelay());
+        for (int i = 0; i < 50; i++)
+            source.getTimeStampResponse(DigestAlgorithm.SHA256, new byte[32]);
+
+        assertTrue(source.getHedgeDelay().compareTo(Duration.ofSeconds(1)) < 0);
+    }
+
+    @Test
+    void testLatencyWindowPercentile() {
+        var window = new HedgedTSPSource.LatencyWindow(100);
+        for (int i = 1; i <= 19; i++)
+            window.add(i);
+
+        assertEquals(-1, window.getPercentileNanos(0.95));
+
+        for (int i = 20; i <= 100; i++)
+            window.add(i);
+
+        assertEquals(95, window.getPercentileNanos(0.95));
+    }
+
+    private static String requestTimestamp(TSPSource source) {
+        return new String(source.getTimeStampResponse(DigestAlgorithm.SHA256, new byte[32]).getBytes());
+    }
+
+    /**
+     * Local stand-in TSA answering every request with its name after a delay.
+     */
+    private TSPSource startTsa(String name, long delayMillis, int status, AtomicInteger requests) throws IOException {
+        var server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", (exchange) -> {
+            if (requests != null)
+                requests.incrementAndGet();
+
+            exchange.getRequestBody().readAllBytes();
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            var body = name.getBytes();
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        servers.add(server);
+
+        var url = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+        return (digestAlgorithm, digest) -> new TimestampBinary(dataLoader.post(url, digest));
+    }
+}
@@ -0,0 +1,88 @@
+package digital.slovensko.autogram.server;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import digital.slovensko.autogram.server.errors.TooManyRequestsException;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AdmissionControllerTest {
+    @Test
+    void testRejectsOverJobLimitUntilReleased() {
+        var controller = new AdmissionController(2, 1000, 5);
+        var first = controller.tryAcquire(10);
+        controller.tryAcquire(10);
+
+        assertThrows(TooManyRequestsException.class, () -> controller.tryAcquire(10));
+
+        first.release();
+        first.release();
+        assertEquals(1, controller.getInFlightJobs());
+        assertDoesNotThrow(() -> controller.tryAcquire(10));
+    }
+
+    @Test
+    void testRejectsOverByteLimitButAdmitsLargeRequestWhenIdle() {
+        var controller = new AdmissionController(10, 100, 5);
+        var large = controller.tryAcquire(500);
+
+        assertThrows(TooManyRequestsException.class, () -> controller.tryAcquire(1));
+
+        large.release();
+        assertEquals(0, controller.getInFlightBytes());
+        controller.tryAcquire(60);
+        assertThrows(TooManyRequestsException.class, () -> controller.tryAcquire(60));
+    }
+
+    @Test
+    void testRejectionSetsRetryAfterHeader() {
+        var controller = new AdmissionController(1, 1000, 7);
+        var requestHeaders = new Headers();
+        requestHeaders.add("Content-Length", "10");
+        var responseHeaders = new Headers();
+        var exchange = mock(HttpExchange.class);
+        when(exchange.getRequestHeaders()).thenReturn(requestHeaders);
+        when(exchange.getResponseHeaders()).thenReturn(responseHeaders);
+
+        controller.acquire(exchange);
+
+        assertThrows(TooManyRequestsException.class, () -> controller.acquire(exchange));
+        assertEquals("7", responseHeaders.getFirst("Retry-After"));
+        assertEquals(10, controller.getInFlightBytes());
+    }
+
+    @Test
+    void testChargesRequestWithoutContentLengthWhileReading() throws Exception {
+        var controller = new AdmissionController(10, 100, 5);
+        var other = controller.tryAcquire(50);
+        var responseHeaders = new Headers();
+        var exchange = mock(HttpExchange.class);
+        when(exchange.getRequestHeaders()).thenReturn(new Headers());
+        when(exchange.getResponseHeaders()).thenReturn(responseHeaders);
+        when(exchange.getRequestBody()).thenReturn(new ByteArrayInputStream(new byte[80]));
+
+        var permit = controller.acquire(exchange);
+        var body = ArgumentCaptor.forClass(InputStream.class);
+        verify(exchange).setStreams(body.capture(), isNull());
+
+        assertEquals(2, controller.getInFlightJobs());
+        assertEquals(40, body.getValue().read(new byte[40]));
+        assertEquals(90, controller.getInFlightBytes());
+        assertThrows(TooManyRequestsException.class, () -> body.getValue().read(new byte[40]));
+        assertEquals("5", responseHeaders.getFirst("Retry-After"));
+
+        permit.release();
+        other.release();
+        assertEquals(0, controller.getInFlightJobs());
+        assertEquals(0, controller.getInFlightBytes());
+    }
+}
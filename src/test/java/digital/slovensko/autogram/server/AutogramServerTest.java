@@ -0,0 +1,123 @@
+package digital.slovensko.autogram.server;
+
+import digital.slovensko.autogram.core.Autogram;
+import digital.slovensko.autogram.core.Batch;
+import digital.slovensko.autogram.core.SigningJob;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AutogramServerTest {
+    private static final int PENDING_SIGN_REQUESTS = 20;
+    private static final String SIGN_REQUEST_BODY = """
+            {
+                "document": {"content": "VGVzdG92YWNpIGRva3VtZW50"},
+                "parameters": {"level": "XAdES_BASELINE_B", "container": "ASiC_E"},
+                "payloadMimeType": "text/plain;base64"
+            }
+            """;
+
+    @Test
+    void testInfoRespondsWhileSignRequestsArePending() throws Exception {
+        var signingStarted = new CountDownLatch(PENDING_SIGN_REQUESTS);
+        var userConfirmed = new CountDownLatch(1);
+
+        var autogram = mock(Autogram.class);
+        doAnswer(invocation -> {
+            signingStarted.countDown();
+            userConfirmed.await();
+            return null;
+        }).when(autogram).sign(any(SigningJob.class));
+
+        var port = getFreePort();
+        var server = new AutogramServer(autogram, "localhost", port, false,
+                ServerExecutorMode.ELASTIC.createExecutor());
+        server.start();
+
+        try {
+            var client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            for (int i = 0; i < PENDING_SIGN_REQUESTS; i++)
+                client.sendAsync(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/sign"))
+                        .POST(HttpRequest.BodyPublishers.ofString(SIGN_REQUEST_BODY)).build(),
+                        HttpResponse.BodyHandlers.discarding());
+
+            assertTrue(signingStarted.await(10, TimeUnit.SECONDS), "Sign requests were not handled concurrently");
+
+            var info = client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/info"))
+                    .timeout(Duration.ofSeconds(5)).GET().build(), HttpResponse.BodyHandlers.ofString());
+
+            assertEquals(200, info.statusCode());
+        } finally {
+            userConfirmed.countDown();
+            server.stop();
+        }
+    }
+
+    @Test
+    void testBatchStatusIsAllowedThroughServerContext() throws Exception {
+        var batchId = "00000000-0000-0000-0000-000000000000";
+        var autogram = mock(Autogram.class);
+        when(autogram.getBatchForStatus(batchId)).thenReturn(new Batch(2));
+
+        var port = getFreePort();
+        var server = new AutogramServer(autogram, "localhost", port, false,
+                ServerExecutorMode.ELASTIC.createExecutor());
+        server.start();
+
+        try {
+            var client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            var status = client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/batch/" + batchId))
+                    .timeout(Duration.ofSeconds(5)).GET().build(), HttpResponse.BodyHandlers.ofString());
+
+            assertEquals(200, status.statusCode());
+            assertTrue(status.body().contains(batchId));
+            assertTrue(status.headers().firstValue("Access-Control-Allow-Methods").orElse("").contains("GET"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void testJobsErrorsRespondWithErrorBody() throws Exception {
+        var port = getFreePort();
+        var server = new AutogramServer(mock(Autogram.class), "localhost", port, false,
+                ServerExecutorMode.ELASTIC.createExecutor());
+        server.start();
+
+        try {
+            var client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            var notFound = client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/jobs/unknown"))
+                    .timeout(Duration.ofSeconds(5)).GET().build(), HttpResponse.BodyHandlers.ofString());
+            var notAllowed = client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/jobs"))
+                    .timeout(Duration.ofSeconds(5)).GET().build(), HttpResponse.BodyHandlers.ofString());
+
+            assertEquals(404, notFound.statusCode());
+            assertTrue(notFound.body().contains("JOB_NOT_FOUND"));
+            assertEquals(405, notAllowed.statusCode());
+            assertTrue(notAllowed.body().contains("METHOD_NOT_ALLOWED"));
+            assertEquals("application/json", notAllowed.headers().firstValue("Content-Type").orElse(""));
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static int getFreePort() throws IOException {
+        try (var socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package digital.slovensko.autogram.server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSyntaxException;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import digital.slovensko.autogram.core.errors.ResponseNetworkErrorException;
+import digital.slovensko.autogram.server.dto.BatchEndRequestBody;
+import digital.slovensko.autogram.server.dto.ErrorResponse;
+import digital.slovensko.autogram.server.errors.EmptyBodyException;
+import eu.europa.esig.dss.model.InMemoryDocument;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class EndpointUtilsTest {
+    private static HttpExchange exchangeWithBody(byte[] body) {
+        var exchange = mock(HttpExchange.class);
+        when(exchange.getRequestBody()).thenReturn(new ByteArrayInputStream(body));
+        return exchange;
+    }
+
+    @Test
+    void testLoadFromJsonExchangeDecodesUtf8() throws IOException {
+        var exchange = exchangeWithBody("{\"batchId\": \"ľščťžýáíé\"}".getBytes(StandardCharsets.UTF_8));
+
+        var body = EndpointUtils.loadFromJsonExchange(exchange, BatchEndRequestBody.class);
+
+        assertEquals("ľščťžýáíé", body.batchId());
+    }
+
+    @Test
+    void testLoadFromJsonExchangeThrowsOnEmptyBody() {
+        var exchange = exchangeWithBody(new byte[0]);
+
+        assertThrows(EmptyBodyException.class,
+                () -> EndpointUtils.loadFromJsonExchange(exchange, BatchEndRequestBody.class));
+    }
+
+    @Test
+    void testLoadFromJsonExchangeThrowsOnTrailingData() {
+        var exchange = exchangeWithBody("{\"batchId\": \"1\"} {".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(JsonSyntaxException.class,
+                () -> EndpointUtils.loadFromJsonExchange(exchange, BatchEndRequestBody.class));
+    }
+
+    @Test
+    void testWriteSignResponseMatchesSerializedSignResponse() throws IOException {
+        var content = new byte[100_003];
+        new Random(42).nextBytes(content);
+        var out = new ByteArrayOutputStream();
+
+        EndpointUtils.writeSignResponse(new InMemoryDocument(content), "CN=Ján \"Tester\"", "CN=Issuer", out);
+
+        var json = new Gson().fromJson(out.toString(StandardCharsets.UTF_8), JsonObject.class);
+        assertArrayEquals(content, Base64.getDecoder().decode(json.get("content").getAsString()));
+        assertEquals("CN=Ján \"Tester\"", json.get("signedBy").getAsString());
+        assertEquals("CN=Issuer", json.get("issuedby").getAsString());
+    }
+
+    @Test
+    void testFailedSignResponseClosesExchangeWithoutSendingHeadersAgain() throws IOException {
+        var exchange = mock(HttpExchange.class);
+        when(exchange.getResponseHeaders()).thenReturn(new Headers());
+        when(exchange.getResponseBody()).thenReturn(new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        });
+        var responseCode = new AtomicInteger(-1);
+        when(exchange.getResponseCode()).thenAnswer((invocation) -> responseCode.get());
+        doAnswer((invocation) -> {
+            responseCode.set(invocation.getArgument(0));
+            return null;
+        }).when(exchange).sendResponseHeaders(anyInt(), anyLong());
+
+        assertThrows(ResponseNetworkErrorException.class, () -> EndpointUtils.respondWithSignResponse(
+                new InMemoryDocument(new byte[100_000]), "CN=Signer", "CN=Issuer", exchange));
+        EndpointUtils.respondWithError(ErrorResponse.buildFromException(new IllegalStateException()), exchange);
+
+        verify(exchange, times(1)).sendResponseHeaders(anyInt(), anyLong());
+        verify(exchange, atLeastOnce()).close();
+    }
+}
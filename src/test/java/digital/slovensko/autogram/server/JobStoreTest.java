@@ -0,0 +1,105 @@
+package digital.slovensko.autogram.server;
+
+import digital.slovensko.autogram.core.DocumentSpill;
+import digital.slovensko.autogram.core.Responder;
+import digital.slovensko.autogram.core.SignedDocument;
+import digital.slovensko.autogram.core.errors.SigningCanceledByUserException;
+import digital.slovensko.autogram.server.errors.JobNotFoundException;
+import digital.slovensko.autogram.server.errors.JobStoreFullException;
+import eu.europa.esig.dss.enumerations.MimeTypeEnum;
+import eu.europa.esig.dss.model.FileDocument;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class JobStoreTest {
+    @Test
+    void testAwaitStatusReturnsWhenJobIsSigned() throws InterruptedException {
+        var store = new JobStore(10, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        var job = store.create();
+        var signedDocument = mock(SignedDocument.class);
+
+        new Thread(() -> new JobStoreResponder(job).onDocumentSigned(signedDocument)).start();
+
+        assertEquals(JobStore.Job.Status.SIGNED, job.awaitStatus(Duration.ofSeconds(10)));
+
+        var responder = mock(Responder.class);
+        job.respondTo(responder);
+        verify(responder).onDocumentSigned(signedDocument);
+    }
+
+    @Test
+    void testAwaitStatusTimesOutWhilePending() throws InterruptedException {
+        var store = new JobStore(10, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        var job = store.create();
+
+        assertEquals(JobStore.Job.Status.PENDING, job.awaitStatus(Duration.ofMillis(50)));
+        assertThrows(IllegalStateException.class, () -> job.respondTo(mock(Responder.class)));
+    }
+
+    @Test
+    void testStoreIsBounded() {
+        var store = new JobStore(2, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        store.create();
+        store.create();
+
+        assertThrows(JobStoreFullException.class, store::create);
+    }
+
+    @Test
+    void testFinishedJobsExpireButPendingDoNot() throws InterruptedException {
+        var store = new JobStore(2, Duration.ZERO, Duration.ofMinutes(1));
+        var pending = store.create();
+        var failed = store.create();
+        new JobStoreResponder(failed).onDocumentSignFailed(new SigningCanceledByUserException());
+
+        Thread.sleep(10);
+
+        assertThrows(JobNotFoundException.class, () -> store.get(failed.getId()));
+        assertSame(pending, store.get(pending.getId()));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void testPendingJobsExpireAfterPendingTtl() throws InterruptedException {
+        var store = new JobStore(1, Duration.ofMinutes(1), Duration.ZERO);
+        var pending = store.create();
+
+        Thread.sleep(10);
+
+        assertThrows(JobNotFoundException.class, () -> store.get(pending.getId()));
+        assertNotNull(store.create());
+    }
+
+    @Test
+    void testSpilledResultOfExpiredPendingJobIsDeleted() throws InterruptedException {
+        var store = new JobStore(1, Duration.ofMinutes(1), Duration.ZERO);
+        var job = store.create();
+        Thread.sleep(10);
+        assertEquals(0, store.size());
+
+        var result = (FileDocument) DocumentSpill.fromBytes(new byte[33 * 1024 * 1024], "signed.asice",
+                MimeTypeEnum.ASICE);
+        new JobStoreResponder(job).onDocumentSigned(new SignedDocument(result, null));
+
+        assertFalse(result.getFile().exists());
+    }
+
+    @Test
+    void testSpilledResultIsDeletedWhenJobExpires() throws InterruptedException {
+        var store = new JobStore(2, Duration.ZERO, Duration.ofMinutes(1));
+        var job = store.create();
+        var result = (FileDocument) DocumentSpill.fromBytes(new byte[33 * 1024 * 1024], "signed.asice",
+                MimeTypeEnum.ASICE);
+        new JobStoreResponder(job).onDocumentSigned(new SignedDocument(result, null));
+
+        Thread.sleep(10);
+
+        assertEquals(0, store.size());
+        assertFalse(result.getFile().exists());
+    }
+}
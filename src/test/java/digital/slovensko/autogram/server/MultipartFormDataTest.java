@@ -0,0 +1,52 @@
+package digital.slovensko.autogram.server;
+
+import digital.slovensko.autogram.server.errors.MalformedBodyException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultipartFormDataTest {
+    private static final String CONTENT_TYPE = "multipart/form-data; boundary=\"XyZ\"";
+
+    @Test
+    void testParseKeepsBinaryContentIntact() throws IOException {
+        var document = new byte[] {'\r', '\n', '\r', '-', '-', 'X', 0, (byte) 0xff, '\r', '\n'};
+        var body = new ByteArrayOutputStream();
+        body.write(("preamble\r\n--XyZ\r\n"
+                + "Content-Disposition: form-data; name=\"parameters\"\r\n"
+                + "Content-Type: application/json\r\n\r\n"
+                + "{\"payloadMimeType\": \"application/pdf\"}\r\n--XyZ\r\n"
+                + "Content-Disposition: form-data; name=\"document\"; filename=\"dokument.pdf\"\r\n"
+                + "Content-Type: application/pdf\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.write(document);
+        body.write("\r\n--XyZ--\r\n".getBytes(StandardCharsets.UTF_8));
+
+        var form = MultipartFormData.parse(new ByteArrayInputStream(body.toByteArray()), CONTENT_TYPE);
+
+        assertEquals("{\"payloadMimeType\": \"application/pdf\"}", form.get("parameters").getContentAsString());
+        assertEquals("dokument.pdf", form.get("document").filename());
+        assertEquals("application/pdf", form.get("document").contentType());
+        try (var in = form.get("document").content().openStream()) {
+            assertArrayEquals(document, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void testParseThrowsOnUnterminatedBody() {
+        var body = "--XyZ\r\nContent-Disposition: form-data; name=\"document\"\r\n\r\ncontent";
+
+        assertThrows(MalformedBodyException.class, () -> MultipartFormData
+                .parse(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), CONTENT_TYPE));
+    }
+
+    @Test
+    void testParseThrowsWithoutBoundary() {
+        assertThrows(MalformedBodyException.class, () -> MultipartFormData
+                .parse(new ByteArrayInputStream(new byte[0]), "multipart/form-data"));
+    }
+}
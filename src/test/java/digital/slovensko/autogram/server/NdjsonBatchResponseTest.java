@@ -0,0 +1,109 @@
+package digital.slovensko.autogram.server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import digital.slovensko.autogram.core.SignedDocument;
+import digital.slovensko.autogram.core.errors.ResponseNetworkErrorException;
+import digital.slovensko.autogram.core.errors.SigningCanceledByUserException;
+import digital.slovensko.autogram.server.errors.RequestValidationException;
+import eu.europa.esig.dss.model.DSSDocument;
+import eu.europa.esig.dss.model.DSSException;
+import eu.europa.esig.dss.model.x509.CertificateToken;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class NdjsonBatchResponseTest {
+    private static class ClosableOutputStream extends ByteArrayOutputStream {
+        boolean closed = false;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    @Test
+    void testEachDocumentIsReportedOnceAndResponseIsClosedAfterLast() {
+        var out = new ClosableOutputStream();
+        var response = new NdjsonBatchResponse(out, 2);
+
+        response.forDocument(1).onDocumentSignFailed(new SigningCanceledByUserException());
+        assertFalse(out.closed);
+
+        response.writeFailed(0, new RequestValidationException("Document is required", ""));
+        response.writeFailed(0, new RequestValidationException("Reported twice", ""));
+        assertTrue(out.closed);
+
+        var lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+
+        var first = new Gson().fromJson(lines[0], JsonObject.class);
+        assertEquals(1, first.get("index").getAsInt());
+        assertEquals("FAILED", first.get("status").getAsString());
+        assertEquals("USER_CANCELLED", first.getAsJsonObject("error").get("code").getAsString());
+
+        var second = new Gson().fromJson(lines[1], JsonObject.class);
+        assertEquals(0, second.get("index").getAsInt());
+        assertEquals("UNPROCESSABLE_INPUT", second.getAsJsonObject("error").get("code").getAsString());
+    }
+
+    @Test
+    void testFailedWriteCompletesResponseAndDropsLaterRecords() {
+        var out = new OutputStream() {
+            boolean closed = false;
+
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+
+            @Override
+            public void close() {
+                closed = true;
+            }
+        };
+        var completed = new AtomicInteger();
+        var response = new NdjsonBatchResponse(out, 3, completed::incrementAndGet);
+
+        assertThrows(ResponseNetworkErrorException.class,
+                () -> response.writeFailed(0, new RequestValidationException("Document is required", "")));
+        assertTrue(response.isBroken());
+        assertTrue(out.closed);
+        assertEquals(1, completed.get());
+
+        response.writeFailed(1, new RequestValidationException("Document is required", ""));
+        response.forDocument(2).onDocumentSignFailed(new SigningCanceledByUserException());
+        assertEquals(1, completed.get());
+    }
+
+    @Test
+    void testDocumentFailingMidRecordDoesNotGetSecondRecord() {
+        var document = mock(DSSDocument.class);
+        when(document.openStream()).thenThrow(new DSSException("Unable to read the signed document"));
+        var certificate = mock(CertificateToken.class, RETURNS_DEEP_STUBS);
+        when(certificate.getSubject().getPrincipal().toString()).thenReturn("CN=Signer");
+        when(certificate.getIssuer().getPrincipal().toString()).thenReturn("CN=Issuer");
+
+        var out = new ClosableOutputStream();
+        var completed = new AtomicInteger();
+        var response = new NdjsonBatchResponse(out, 2, completed::incrementAndGet);
+
+        assertThrows(DSSException.class, () -> response.writeSigned(0, new SignedDocument(document, certificate)));
+        response.writeFailed(0, new RequestValidationException("Reported twice", ""));
+        response.writeFailed(1, new RequestValidationException("Document is required", ""));
+
+        assertTrue(out.closed);
+        assertEquals(1, completed.get());
+        assertFalse(out.toString(StandardCharsets.UTF_8).contains("FAILED"));
+    }
+}
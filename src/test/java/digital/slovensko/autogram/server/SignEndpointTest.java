@@ -0,0 +1,171 @@
+package digital.slovensko.autogram.server;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpServer;
+import digital.slovensko.autogram.core.Autogram;
+import digital.slovensko.autogram.core.SigningJob;
+import digital.slovensko.autogram.core.SigningKey;
+import digital.slovensko.autogram.drivers.FakeTokenDriver;
+import eu.europa.esig.dss.enumerations.MimeTypeEnum;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class SignEndpointTest {
+    private final Autogram autogram = mock(Autogram.class);
+    private final AdmissionController admissionController = new AdmissionController(10, 100, 5);
+    private HttpServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/sign", new SignEndpoint(autogram, admissionController));
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void testChunkedJsonUploadOverByteLimitIsRejectedWithRetryAfter() throws Exception {
+        var other = admissionController.tryAcquire(50);
+        var body = "{\"document\": {\"content\": \"" + "A".repeat(20_000) + "\"}, "
+                + "\"parameters\": {\"level\": \"XAdES_BASELINE_B\", \"container\": \"ASiC_E\"}, "
+                + "\"payloadMimeType\": \"text/plain;base64\"}";
+
+        var response = postChunked("application/json", body.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(429, response.statusCode());
+        assertEquals("5", response.headers().firstValue("Retry-After").orElse(null));
+        assertTrue(response.body().contains("TOO_MANY_REQUESTS"));
+        assertEquals(1, admissionController.getInFlightJobs());
+
+        other.release();
+        assertEquals(0, admissionController.getInFlightBytes());
+    }
+
+    @Test
+    void testChunkedMultipartUploadOverByteLimitIsRejectedWithRetryAfter() throws Exception {
+        var other = admissionController.tryAcquire(50);
+        var body = ("--XyZ\r\n"
+                + "Content-Disposition: form-data; name=\"document\"; filename=\"dokument.txt\"\r\n"
+                + "Content-Type: text/plain\r\n\r\n"
+                + "A".repeat(20_000) + "\r\n--XyZ--\r\n").getBytes(StandardCharsets.UTF_8);
+
+        var response = postChunked("multipart/form-data; boundary=XyZ", body);
+
+        assertEquals(429, response.statusCode());
+        assertEquals("5", response.headers().firstValue("Retry-After").orElse(null));
+        assertEquals(1, admissionController.getInFlightJobs());
+
+        other.release();
+    }
+
+    @Test
+    void testMultipartUploadIsSignedAsRawDocument() throws Exception {
+        var signedDocument = signJobsWithFakeKey();
+        var body = ("--XyZ\r\n"
+                + "Content-Disposition: form-data; name=\"parameters\"\r\n"
+                + "Content-Type: application/json\r\n\r\n"
+                + "{\"parameters\": {\"level\": \"XAdES_BASELINE_B\", \"container\": \"ASiC_E\"}}\r\n--XyZ\r\n"
+                + "Content-Disposition: form-data; name=\"document\"; filename=\"dokument.txt\"\r\n"
+                + "Content-Type: text/plain\r\n\r\n"
+                + "Testovaci dokument\r\n--XyZ--\r\n").getBytes(StandardCharsets.UTF_8);
+
+        var response = send(HttpRequest.newBuilder(getSignUri())
+                .header("Content-Type", "multipart/form-data; boundary=XyZ")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body)), HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        var json = new Gson().fromJson(response.body(), JsonObject.class);
+        assertTrue(Base64.getDecoder().decode(json.get("content").getAsString()).length > 0);
+        assertNotNull(json.get("signedBy"));
+
+        var document = signedDocument.get().getDocument();
+        assertEquals("dokument.txt", document.getName());
+        assertEquals(MimeTypeEnum.TEXT, document.getMimeType());
+        try (var in = document.openStream()) {
+            assertEquals("Testovaci dokument", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testOctetStreamResponseHasRawSignedDocument() throws Exception {
+        signJobsWithFakeKey();
+        var body = "{\"document\": {\"filename\": \"dokument.txt\", \"content\": \"VGVzdG92YWNpIGRva3VtZW50\"}, "
+                + "\"parameters\": {\"level\": \"XAdES_BASELINE_B\", \"container\": \"ASiC_E\"}, "
+                + "\"payloadMimeType\": \"text/plain;base64\"}";
+
+        var response = send(HttpRequest.newBuilder(getSignUri())
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/octet-stream")
+                .POST(HttpRequest.BodyPublishers.ofString(body)), HttpResponse.BodyHandlers.ofByteArray());
+
+        assertEquals(200, response.statusCode());
+        assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("application/vnd.etsi.asic-e"));
+        assertTrue(response.headers().firstValue("X-Autogram-Signed-By").isPresent());
+        // ASiC-E is a zip container
+        assertEquals('P', response.body()[0]);
+        assertEquals('K', response.body()[1]);
+    }
+
+    /**
+     * Sign every submitted job right away with a key of the FakeTokenDriver, as the GUI would after confirmation.
+     *
+     * @return the last submitted job
+     */
+    private AtomicReference<SigningJob> signJobsWithFakeKey() {
+        var token = new FakeTokenDriver("fake", null, "fake", "").createToken(null, null);
+        var key = new SigningKey(token, token.getKeys().get(0));
+        var submitted = new AtomicReference<SigningJob>();
+        doAnswer((invocation) -> {
+            SigningJob job = invocation.getArgument(0);
+            submitted.set(job);
+            job.signWithKeyAndRespond(key);
+            return null;
+        }).when(autogram).sign(any(SigningJob.class));
+
+        return submitted;
+    }
+
+    private URI getSignUri() {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/sign");
+    }
+
+    private static <T> HttpResponse<T> send(HttpRequest.Builder request, HttpResponse.BodyHandler<T> bodyHandler)
+            throws Exception {
+        var client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        return client.send(request.build(), bodyHandler);
+    }
+
+    /**
+     * The body publisher has no known length, so the request is sent without Content-Length.
+     */
+    private HttpResponse<String> postChunked(String contentType, byte[] body) throws Exception {
+        return send(HttpRequest.newBuilder(getSignUri())
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofInputStream(() -> new ByteArrayInputStream(body))),
+                HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,71 @@
+package digital.slovensko.autogram.server;
+
+import digital.slovensko.autogram.core.SigningJob;
+import digital.slovensko.autogram.core.SigningKey;
+import digital.slovensko.autogram.core.SigningParameters;
+import digital.slovensko.autogram.server.errors.RequestValidationException;
+import eu.europa.esig.dss.enumerations.DigestAlgorithm;
+import eu.europa.esig.dss.model.ToBeSigned;
+import eu.europa.esig.dss.model.x509.CertificateToken;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SigningSessionTokensTest {
+    private static final byte[] DATA_TO_SIGN = "signed attributes".getBytes();
+
+    @Test
+    void testTokenIsVerifiedForTheSameDataToSign() {
+        var tokens = new SigningSessionTokens(Duration.ofMinutes(1));
+
+        var session = tokens.verify(tokens.create(preparedSignature()), DATA_TO_SIGN);
+
+        assertEquals(DigestAlgorithm.SHA256, session.digestAlgorithm());
+        assertEquals(1234, session.signingTime());
+    }
+
+    @Test
+    void testTokenIsRejectedForOtherDataOrInstance() {
+        var tokens = new SigningSessionTokens(Duration.ofMinutes(1));
+        var token = tokens.create(preparedSignature());
+
+        assertThrows(RequestValidationException.class, () -> tokens.verify(token, "other".getBytes()));
+        assertThrows(RequestValidationException.class,
+                () -> new SigningSessionTokens(Duration.ofMinutes(1)).verify(token, DATA_TO_SIGN));
+    }
+
+    @Test
+    void testExpiredTokenIsRejected() {
+        var tokens = new SigningSessionTokens(Duration.ofMillis(-1));
+
+        assertThrows(RequestValidationException.class,
+                () -> tokens.verify(tokens.create(preparedSignature()), DATA_TO_SIGN));
+    }
+
+    private static SigningJob.PreparedSignature preparedSignature() {
+        var parameters = mock(SigningParameters.class);
+        when(parameters.getDigestAlgorithm()).thenReturn(DigestAlgorithm.SHA256);
+        var job = mock(SigningJob.class);
+        when(job.getParameters()).thenReturn(parameters);
+
+        var certificate = mock(CertificateToken.class);
+        when(certificate.getEncoded()).thenReturn(new byte[] { 1, 2, 3 });
+        var key = mock(SigningKey.class);
+        when(key.getCertificate()).thenReturn(certificate);
+
+        var dataToSign = new ToBeSigned();
+        dataToSign.setBytes(DATA_TO_SIGN);
+
+        var prepared = mock(SigningJob.PreparedSignature.class);
+        when(prepared.getJob()).thenReturn(job);
+        when(prepared.getKey()).thenReturn(key);
+        when(prepared.getDataToSign()).thenReturn(dataToSign);
+        when(prepared.getSigningDate()).thenReturn(new Date(1234));
+
+        return prepared;
+    }
+}
@@ -1,15 +1,20 @@
 package digital.slovensko.autogram.server.dto;
 
+import digital.slovensko.autogram.core.SigningJob;
 import digital.slovensko.autogram.core.errors.TransformationParsingErrorException;
 import digital.slovensko.autogram.core.errors.XMLValidationException;
 import digital.slovensko.autogram.server.errors.MalformedBodyException;
+import digital.slovensko.autogram.server.errors.RequestValidationException;
+import eu.europa.esig.dss.enumerations.ASiCContainerType;
 import eu.europa.esig.dss.enumerations.DigestAlgorithm;
 import eu.europa.esig.dss.enumerations.SignatureLevel;
+import eu.europa.esig.dss.enumerations.SignaturePackaging;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 import java.io.*;
+import java.security.MessageDigest;
 import java.util.Base64;
 
 class SignRequestBodyTest {
@@ -1380,4 +1385,101 @@ class SignRequestBodyTest {
 
         Assertions.assertDoesNotThrow(() -> {signRequestBody.getParameters(null);});
     }
+
+    @Test
+    void testDocumentIsDecodedOnlyOnce() throws IOException {
+        var content = Base64.getEncoder().encodeToString("Testovací dokument".getBytes());
+        var document = new Document("TextDocument.txt", content);
+
+        var signingParameters = new ServerSigningParameters(
+                SignatureLevel.XAdES_BASELINE_B,
+                ASiCContainerType.ASiC_E,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                false,
+                null,
+                false,
+                null,
+                null,
+                null,
+                null,
+                null);
+
+        var signRequestBody = new SignRequestBody(document, signingParameters, "text/plain;base64");
+
+        signRequestBody.validateDocument();
+        var decoded = signRequestBody.getDocument();
+        signRequestBody.validateSigningParameters();
+        var parameters = signRequestBody.getParameters(null);
+        var job = SigningJob.buildFromRequest(signRequestBody.getDocument(), parameters, null);
+
+        // validation, parameter building and the job all share the document decoded first
+        Assertions.assertSame(decoded, signRequestBody.getDocument());
+        Assertions.assertSame(decoded, job.getDocument());
+        try (var in = decoded.openStream()) {
+            Assertions.assertArrayEquals("Testovací dokument".getBytes(), in.readAllBytes());
+        }
+    }
+
+    @Test
+    void testDigestOnlyRequestBuildsDetachedJobWithoutContent() throws Exception {
+        var digest = Base64.getEncoder().encodeToString(
+                MessageDigest.getInstance("SHA-256").digest("large archive".getBytes()));
+        var signingParameters = new ServerSigningParameters(SignatureLevel.XAdES_BASELINE_B, null, null, null,
+                SignaturePackaging.DETACHED, DigestAlgorithm.SHA256, false, null, null, null, null, null, null, false,
+                null, false, null, null, null, null, null);
+
+        var signRequestBody = new SignRequestBody(new DocumentDigest("archive.zip", DigestAlgorithm.SHA256, digest),
+                signingParameters, null);
+
+        signRequestBody.validateDocument();
+        signRequestBody.validateSigningParameters();
+        var job = SigningJob.buildFromRequest(signRequestBody.getDocument(), signRequestBody.getParameters(null), null);
+
+        Assertions.assertTrue(job.isDigestOnly());
+        Assertions.assertEquals("archive.zip", job.getDocument().getName());
+    }
+
+    @Test
+    void testDigestOnlyRequestRequiresDetachedPackaging() {
+        var signingParameters = new ServerSigningParameters(SignatureLevel.CAdES_BASELINE_B, null, null, null,
+                SignaturePackaging.ENVELOPING, DigestAlgorithm.SHA256, false, null, null, null, null, null, null, false,
+                null, false, null, null, null, null, null);
+
+        var signRequestBody = new SignRequestBody(new DocumentDigest("archive.zip", DigestAlgorithm.SHA256, "AAAA"),
+                signingParameters, null);
+
+        Assertions.assertThrows(RequestValidationException.class, signRequestBody::validateSigningParameters);
+    }
+
+    @Test
+    void testPreparationRejectsXDCCreation() {
+        var withContainerXmlns = new ServerSigningParameters(SignatureLevel.XAdES_BASELINE_B, ASiCContainerType.ASiC_E,
+                null, "http://data.gov.sk/def/container/xmldatacontainer+xml/1.1", SignaturePackaging.ENVELOPING,
+                DigestAlgorithm.SHA256, false, null, null, null, xsdSchema, xsltTransformation, defaultIdentifier,
+                false, null, false, null, null, null, null, null);
+        var withAutoLoadEform = new ServerSigningParameters(SignatureLevel.XAdES_BASELINE_B, ASiCContainerType.ASiC_E,
+                null, null, SignaturePackaging.ENVELOPING, DigestAlgorithm.SHA256, false, null, null, null, null, null,
+                null, false, null, true, null, null, null, null, null);
+        var plain = new ServerSigningParameters(SignatureLevel.XAdES_BASELINE_B, ASiCContainerType.ASiC_E, null, null,
+                SignaturePackaging.ENVELOPING, DigestAlgorithm.SHA256, false, null, null, null, null, null, null, false,
+                null, false, null, null, null, null, null);
+
+        var document = new Document("PGE+PC9hPg==");
+        Assertions.assertThrows(RequestValidationException.class,
+                () -> new SignRequestBody(document, withContainerXmlns, "application/xml;base64").validateForPreparation());
+        Assertions.assertThrows(RequestValidationException.class,
+                () -> new SignRequestBody(document, withAutoLoadEform, "application/xml;base64").validateForPreparation());
+        Assertions.assertDoesNotThrow(
+                () -> new SignRequestBody(document, plain, "application/xml;base64").validateForPreparation());
+    }
 }
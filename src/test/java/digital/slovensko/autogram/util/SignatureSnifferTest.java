@@ -0,0 +1,48 @@
+package digital.slovensko.autogram.util;
+
+import eu.europa.esig.dss.model.DSSDocument;
+import eu.europa.esig.dss.model.FileDocument;
+import eu.europa.esig.dss.model.InMemoryDocument;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SignatureSnifferTest {
+    @Test
+    void testUnsignedDocuments() throws IOException {
+        assertTrue(SignatureSniffer.isUnsigned(load("sample.pdf")));
+        assertTrue(SignatureSniffer.isUnsigned(load("no_signatures.asice")));
+        assertTrue(SignatureSniffer.isUnsigned(loadFile("no_signatures.asice")));
+        assertTrue(SignatureSniffer.isUnsigned(load("general_agenda.xml")));
+    }
+
+    @Test
+    void testSignedDocuments() throws IOException {
+        assertFalse(SignatureSniffer.isUnsigned(load("sample_signed.pdf")));
+        assertFalse(SignatureSniffer.isUnsigned(load("sample_pdf_xades.asice")));
+        assertFalse(SignatureSniffer.isUnsigned(loadFile("sample_pdf_cades.asice")));
+        assertFalse(SignatureSniffer.isUnsigned(new InMemoryDocument(("<?xml version=\"1.0\"?><doc><ds:Signature "
+                + "xmlns:ds=\"http://www.w3.org/2000/09/xmldsig#\"/></doc>").getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void testUnrecognizedDocumentsAreNotUnsigned() throws IOException {
+        assertFalse(SignatureSniffer.isUnsigned(load("sample.txt")));
+        assertFalse(SignatureSniffer.isUnsigned(new InMemoryDocument("<not xml".getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private DSSDocument load(String name) throws IOException {
+        try (var in = getClass().getResourceAsStream("/digital/slovensko/autogram/" + name)) {
+            return new InMemoryDocument(Objects.requireNonNull(in).readAllBytes(), name);
+        }
+    }
+
+    private DSSDocument loadFile(String name) {
+        return new FileDocument(Objects.requireNonNull(getClass().getResource("/digital/slovensko/autogram/" + name))
+                .getFile());
+    }
+}